@@ -0,0 +1,67 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.service.master.queue.EndpointResponse;
+import com.ecommerce.service.master.queue.RequestClass;
+import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end batch dispatch: RequestQueueProcessor, GatewayService batching, BatchRequestHandler,
+ * the WebClient exchange and JSON decoding against an in-process stub upstream, and the fan-out to the waiters.
+ *
+ * The response cache is disabled and each invocation asks fresh IDs, so every ID goes through a batch.
+ * Batches are fixed to the number of IDs per invocation, on a single lane, so a full batch is dispatched without waiting
+ * (the long max wait keeps the batches aligned on the invocations, a timeout never cutting one in two).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchDispatchBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int idCount;
+
+    @Param({"batched", "per-id"})
+    private String upstreamMode;
+
+    private AnnotationConfigApplicationContext context;
+    private RequestQueueProcessor processor;
+    private final AtomicLong nextId = new AtomicLong(100000000);
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.create(true, Map.of(
+                "CACHE_API_ENABLED", "false",
+                "QUEUE_API_BATCH_MODE", "fixed",
+                "QUEUE_API_PARAM_MAX_CAP", String.valueOf(idCount),
+                "QUEUE_API_WAIT_MAX_TIME", "1000",
+                "QUEUE_API_LANES", "1",
+                "BATCH_API_PER_ID_ENDPOINTS", "per-id".equals(upstreamMode) ? "product" : ""));
+        processor = context.getBean(RequestQueueProcessor.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EndpointResponse dispatchBatch() {
+        List<String> ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            ids.add(String.valueOf(nextId.getAndIncrement()));
+        }
+        return processor.queueAndProcessRequest("product", ids, Duration.ofSeconds(10), RequestClass.INTERACTIVE).block();
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.config.UpstreamClientRegistry;
+import com.ecommerce.controller.master.GatewayController;
+import com.ecommerce.service.master.GatewayService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Builds the gateway services in a plain Spring context, without the web server,
+ * with an in-process stub standing for the internal services behind the WebClient.
+ *
+ * The properties come from application.properties, with the given overrides on top.
+ * Logging is at WARN, so that the benchmarks measure the pipeline rather than the console of the forked JVM.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param dispatching true to start the GatewayService batching and dispatching to the stub upstream,
+     *                    false to leave the endpoint queues without a consumer (the benchmark drains them itself).
+     * @param overrides The properties overriding application.properties.
+     */
+    public static AnnotationConfigApplicationContext create(boolean dispatching, Map<String, Object> overrides) {
+        Configurator.setRootLevel(Level.WARN);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+        try {
+            context.getEnvironment().getPropertySources().addFirst(new ResourcePropertySource("classpath:application.properties"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", overrides));
+
+        ClassPathBeanDefinitionScanner scanner = new ClassPathBeanDefinitionScanner(context);
+        if (!dispatching) {
+            scanner.addExcludeFilter(new AssignableTypeFilter(GatewayService.class));
+        }
+        scanner.scan("com.ecommerce.service", "com.ecommerce.util");
+
+        context.register(EndpointPropertyResolver.class, EndpointRegistry.class, UpstreamClientRegistry.class, GatewayController.class);
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.registerBean(WebClient.Builder.class, BenchmarkContext::stubWebClientBuilder);
+        context.refresh();
+        return context;
+    }
+
+    /**
+     * A WebClient builder whose clients answer every request in-process, without any network or delay
+     * (the exchange function takes precedence over the connector set by the UpstreamClientRegistry):
+     * the batched contract (?ids=a,b,c) with a JSON object of every ID, and the per-ID contract with a JSON array.
+     */
+    private static WebClient.Builder stubWebClientBuilder() {
+        return WebClient.builder()
+                .exchangeFunction(BenchmarkContext::stubExchange);
+    }
+
+    private static Mono<ClientResponse> stubExchange(ClientRequest request) {
+        URI url = request.url();
+        String ids = UriComponentsBuilder.fromUri(url).build().getQueryParams().getFirst("ids");
+
+        String body;
+        if (ids != null) {
+            StringJoiner json = new StringJoiner(",", "{", "}");
+            for (String id : ids.split(",")) {
+                json.add("\"" + id + "\":" + stubValue(id));
+            }
+            body = json.toString();
+        } else {
+            String path = url.getPath();
+            body = stubValue(path.substring(path.lastIndexOf('/') + 1));
+        }
+
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private static String stubValue(String id) {
+        return "[\"Item " + id + "\",99.99,\"222222220\"]";
+    }
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.util.GatewayParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID parsing and validation of GatewayParser, for requests carrying many IDs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GatewayParserBenchmark {
+
+    @Param({"10", "200"})
+    private int idCount;
+
+    private final GatewayParser parser = new GatewayParser();
+
+    private List<String> numericIds;
+    private List<String> customerIds;
+
+    @Setup
+    public void setUp() {
+        numericIds = new ArrayList<>(idCount);
+        customerIds = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            numericIds.add(String.valueOf(100000000 + i));
+            customerIds.add("a" + (3660234050L + i));
+        }
+    }
+
+    @Benchmark
+    public List<String> parseNumericIds() {
+        return parser.parseToBigDecimals(numericIds);
+    }
+
+    @Benchmark
+    public List<String> parseCustomerIds() {
+        return parser.parseAlphanumericCustomerIds(customerIds);
+    }
+}
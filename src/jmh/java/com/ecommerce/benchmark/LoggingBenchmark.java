@@ -0,0 +1,82 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.util.GatewayParser;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.RootLoggerComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.apache.logging.log4j.util.Unbox;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent on the request thread by the timing lines of GatewayController (two INFO lines per request, each with
+ * the formatted current time), written with the layout of log4j2.xml to a file standing for the console:
+ * - appender: sync writes and flushes on the calling thread, async hands the event to the Disruptor ring buffer
+ *   of an async logger, the logger thread doing the write (events beyond a full ring buffer being discarded,
+ *   as configured by log4j2.component.properties),
+ * - sampleRate: the share of requests logged, 1 for every request or GATEWAY_API_LOG_SAMPLE_RATE.
+ *
+ * With several threads (e.g. -t 4), the sync appender also serializes the callers on its lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    @Param({"1", "0.01"})
+    private double sampleRate;
+
+    private static final List<String> ENDPOINTS = List.of("product", "order");
+
+    private final GatewayParser parser = new GatewayParser();
+
+    private File logFile;
+    private LoggerContext loggerContext;
+    private Logger log;
+
+    @Setup
+    public void setUp() throws IOException {
+        logFile = File.createTempFile("logging-benchmark", ".log");
+
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.add(builder.newAppender("file", "File")
+                .addAttribute("fileName", logFile.getPath())
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%d [%t] %-5p [%c] %m%n")));
+        RootLoggerComponentBuilder root = "async".equals(appender) ? builder.newAsyncRootLogger(Level.INFO) : builder.newRootLogger(Level.INFO);
+        builder.add(root.add(builder.newAppenderRef("file")));
+
+        loggerContext = new LoggerContext("logging-benchmark");
+        loggerContext.start(builder.build());
+        log = loggerContext.getLogger("com.ecommerce.controller.master.GatewayController");
+    }
+
+    @TearDown
+    public void tearDown() {
+        loggerContext.stop();
+        logFile.delete();
+    }
+
+    @Benchmark
+    public void requestTimingLines() {
+        if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            long elapsedTime = 42;
+            log.info("Starting processing for endpoint(s) {} at {}", ENDPOINTS, parser.getFormattedCurrentTime());
+            log.info("Finished processing for endpoint(s) {} at {}. Total time: {} ms", ENDPOINTS, parser.getFormattedCurrentTime(), Unbox.box(elapsedTime));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.service.master.pending.PendingRequestRegistry;
+import com.ecommerce.service.master.queue.EndpointResponse;
+import com.ecommerce.service.master.queue.RequestClass;
+import com.ecommerce.service.master.queue.RequestQueueEntity;
+import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue and waiter registration in RequestQueueProcessor, without batching nor upstream:
+ * each lane of the endpoint queue is drained by a consumer completing each ID as soon as it is enqueued,
+ * so the measure covers admission, registration, enqueue, fan-out and the response map of the endpoint.
+ *
+ * With several threads (e.g. -t 4), a single lane makes the concurrent enqueues contend on one sink,
+ * while several lanes spread them by ID hash.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestQueueBenchmark {
+
+    private static final String ENDPOINT = "product";
+    private static final List<?> DATA = List.of("Item", 99.99, "222222220");
+
+    @Param({"1", "10", "100"})
+    private int idCount;
+
+    @Param({"1", "4"})
+    private int lanes;
+
+    private AnnotationConfigApplicationContext context;
+    private RequestQueueProcessor processor;
+    private Disposable.Composite drain;
+    private List<String> ids;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.create(false, Map.of("CACHE_API_ENABLED", "false", "QUEUE_API_LANES", lanes));
+        processor = context.getBean(RequestQueueProcessor.class);
+
+        PendingRequestRegistry pendingRequests = context.getBean(PendingRequestRegistry.class);
+        RequestQueueEntity requestQueue = context.getBean(RequestQueueEntity.class);
+        drain = Disposables.composite();
+        for (RequestClass requestClass : RequestClass.values()) {
+            requestQueue.getOrCreateLanes(ENDPOINT, requestClass).forEach(lane -> drain.add(lane.asFlux().subscribe(id -> {
+                requestQueue.getLoad(ENDPOINT).release(1);
+                pendingRequests.complete(ENDPOINT, id, DATA);
+            })));
+        }
+
+        ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            ids.add(String.valueOf(100000000 + i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        drain.dispose();
+        context.close();
+    }
+
+    @Benchmark
+    public EndpointResponse enqueueAndRegister() {
+        return processor.queueAndProcessRequest(ENDPOINT, ids, Duration.ofSeconds(10), RequestClass.INTERACTIVE).block();
+    }
+}
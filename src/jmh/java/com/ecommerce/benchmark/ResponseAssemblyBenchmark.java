@@ -0,0 +1,97 @@
+package com.ecommerce.benchmark;
+
+import com.ecommerce.controller.master.GatewayController;
+import com.ecommerce.service.master.cache.ResponseDataCacheEntity;
+import com.ecommerce.service.master.queue.EndpointResponse;
+import com.ecommerce.service.master.queue.RequestClass;
+import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import com.ecommerce.util.RawJsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response assembly with every ID answered from the response cache, so nothing is queued:
+ * - processorHit: buildResponseMap of one endpoint in RequestQueueProcessor,
+ * - controllerHit: the whole GatewayController path, parsing, the Mono.zip over the endpoints and the final map,
+ * - controllerHitEncoded: the same, plus the JSON encoding of the response written by WebFlux.
+ *
+ * The cached data is either decoded (Lists of values) or kept as the raw upstream JSON (UPSTREAM_API_RAW_PAYLOADS).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseAssemblyBenchmark {
+
+    private static final List<String> ENDPOINTS = List.of("product", "inventory", "order", "shipment");
+    private static final List<?> DATA = List.of("Item", 99.99, "222222220");
+
+    @Param({"1", "10", "100"})
+    private int idCount;
+
+    @Param({"false", "true"})
+    private boolean partial;
+
+    @Param({"decoded", "raw"})
+    private String payload;
+
+    private AnnotationConfigApplicationContext context;
+    private RequestQueueProcessor processor;
+    private GatewayController controller;
+    private List<String> ids;
+    private MultiValueMap<String, String> params;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContext.create(false, Map.of("CACHE_API_TTL", "3600000"));
+        processor = context.getBean(RequestQueueProcessor.class);
+        controller = context.getBean(GatewayController.class);
+
+        ResponseDataCacheEntity responseDataCache = context.getBean(ResponseDataCacheEntity.class);
+        List<?> data = "raw".equals(payload) ?
+                context.getBean(RawJsonParser.class).parseValue(objectMapper.writeValueAsBytes(DATA)) : DATA;
+        ids = new ArrayList<>(idCount);
+        for (int i = 0; i < idCount; i++) {
+            String id = String.valueOf(100000000 + i);
+            ids.add(id);
+            ENDPOINTS.forEach(endpoint -> responseDataCache.put(endpoint, id, data));
+        }
+
+        params = new LinkedMultiValueMap<>();
+        ENDPOINTS.forEach(endpoint -> params.add(endpoint, String.join(",", ids)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EndpointResponse processorHit() {
+        return processor.queueAndProcessRequest("product", ids, Duration.ofSeconds(10), RequestClass.INTERACTIVE).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> controllerHit() {
+        return controller.getAggregatedData(params, null, null, null, partial).block();
+    }
+
+    @Benchmark
+    public byte[] controllerHitEncoded() throws IOException {
+        return objectMapper.writeValueAsBytes(controller.getAggregatedData(params, null, null, null, partial).block().getBody());
+    }
+}
@@ -0,0 +1,153 @@
+package com.ecommerce.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives open-loop traffic to the gateway: requests are sent on a Poisson schedule at the configured rate,
+ * whether or not the previous ones have answered, the way independent clients do.
+ *
+ * Latencies are measured from the moment each request was scheduled (not actually sent), so a stalled sender
+ * or client is charged to the latency instead of silently lowering the load (coordinated omission).
+ * Requests beyond maxInFlight are dropped and counted, rather than queued in the generator.
+ */
+public class LoadGenerator {
+
+    private final LoadTestConfig config;
+    private final ZipfDistribution popularity;
+
+    private final LoopResources loopResources = LoopResources.create("loadtest-client", 1, true);
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+
+    private final Recorder latencies = new Recorder(3);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread sender;
+
+    public LoadGenerator(LoadTestConfig config, int gatewayPort) {
+        this.config = config;
+        this.popularity = new ZipfDistribution(config.idSpace(), config.skew());
+        this.connectionProvider = ConnectionProvider.builder("loadtest-client")
+                .maxConnections(config.maxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .runOn(loopResources)
+                .baseUrl("http://localhost:" + gatewayPort)
+                .responseTimeout(Duration.ofMillis(config.deadline() + 10000));
+    }
+
+    public void start() {
+        running = true;
+        sender = new Thread(this::send, "loadtest-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        sender.join();
+        long waitUntil = System.nanoTime() + Duration.ofMillis(config.deadline() + 5000).toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+        connectionProvider.disposeLater().block();
+        loopResources.disposeLater().block();
+    }
+
+    /**
+     * Resets the counters and returns the interval since the previous reset, so the warmup is left out of the measurement.
+     */
+    public Snapshot reset() {
+        Histogram histogram = latencies.getIntervalHistogram();
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sumThenReset()));
+        return new Snapshot(histogram, statusCounts, dropped.sumThenReset(), failed.sumThenReset());
+    }
+
+    private void send() {
+        long next = System.nanoTime();
+        while (running) {
+            // Exponential inter-arrival times make the arrivals a Poisson process of the configured rate
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / config.rate() * 1_000_000_000L);
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            fire(next);
+        }
+    }
+
+    private void fire(long scheduledAt) {
+        if (inFlight.incrementAndGet() > config.maxInFlight()) {
+            inFlight.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+
+        httpClient.get()
+                .uri(nextUri())
+                .responseSingle((response, body) -> body.then(Mono.just(response.status().code())))
+                .subscribe(
+                        status -> {
+                            latencies.recordValue(System.nanoTime() - scheduledAt);
+                            statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                        },
+                        e -> {
+                            failed.increment();
+                            inFlight.decrementAndGet();
+                        },
+                        inFlight::decrementAndGet);
+    }
+
+    /**
+     * A gateway request over endpointsPerRequest distinct endpoints, each with idsPerEndpoint IDs of Zipf popularity.
+     */
+    private String nextUri() {
+        List<String> endpoints = new ArrayList<>(config.endpoints());
+        Collections.shuffle(endpoints, ThreadLocalRandom.current());
+
+        StringBuilder uri = new StringBuilder("/gateway?deadline=").append(config.deadline());
+        for (String endpoint : endpoints.subList(0, config.endpointsPerRequest())) {
+            StringJoiner ids = new StringJoiner(",");
+            for (int i = 0; i < config.idsPerEndpoint(); i++) {
+                ids.add(String.valueOf(100000000 + popularity.sample()));
+            }
+            uri.append('&').append(endpoint).append('=').append(ids);
+        }
+        return uri.toString();
+    }
+
+    /**
+     * The gateway responses of a measurement interval.
+     *
+     * @param latencies The latencies in ns of the answered requests, from their scheduled time.
+     * @param statuses The number of responses per HTTP status.
+     * @param dropped The requests not sent because maxInFlight were in flight.
+     * @param failed The requests which failed without a response (connection error, client timeout).
+     */
+    public record Snapshot(Histogram latencies, Map<Integer, Long> statuses, long dropped, long failed) {
+    }
+}
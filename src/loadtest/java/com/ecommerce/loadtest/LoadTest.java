@@ -0,0 +1,208 @@
+package com.ecommerce.loadtest;
+
+import com.ecommerce.MainApplication;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Statistic;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test harness of the gateway: starts a StubUpstream, the gateway pointing at it, drives open-loop traffic with
+ * the LoadGenerator for a warmup then a measurement, and reports what was observed during the measurement:
+ * throughput and response statuses, latency percentiles, coalescing and cache hit ratios, upstream calls and batch sizes,
+ * GC activity, heap and allocation rate.
+ *
+ * Run with: mvn -P loadtest compile exec:exec -Dloadtest.args="rate=500 duration=120 --QUEUE_API_BATCH_MODE=fixed"
+ * (see LoadTestConfig for the arguments).
+ *
+ * The stub and the generator share the JVM of the gateway, on their own threads (named loadtest-*): their allocations
+ * are reported apart, but their CPU and GC cost is part of the figures, so these are a conservative estimate.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        System.out.println("Load test " + config);
+
+        StubUpstream stub = new StubUpstream(config);
+        int stubPort = stub.start();
+
+        ConfigurableApplicationContext gateway = startGateway(config, stubPort);
+        int gatewayPort = gateway.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        MeterRegistry meterRegistry = gateway.getBean(MeterRegistry.class);
+
+        LoadGenerator generator = new LoadGenerator(config, gatewayPort);
+        generator.start();
+
+        System.out.println("Warming up for " + config.warmup() + " s at " + config.rate() + " requests/s");
+        Thread.sleep(config.warmup() * 1000L);
+        generator.reset();
+        RunCounters before = RunCounters.capture(meterRegistry, stub);
+
+        System.out.println("Measuring for " + config.duration() + " s");
+        Thread.sleep(config.duration() * 1000L);
+        LoadGenerator.Snapshot snapshot = generator.reset();
+        RunCounters after = RunCounters.capture(meterRegistry, stub);
+
+        generator.stop();
+        report(config, snapshot, before, after);
+
+        gateway.close();
+        stub.stop();
+        System.exit(0);
+    }
+
+    /**
+     * Starts the gateway on a random port against the stub, its request logs turned down so the console does not
+     * become the bottleneck. The gateway arguments of the load test come last and override these.
+     */
+    private static ConfigurableApplicationContext startGateway(LoadTestConfig config, int stubPort) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("UPSTREAM_API_BASE_URL", "http://localhost:" + stubPort + "/internal/");
+        properties.put("logging.level.com.ecommerce", "WARN");
+        for (String arg : config.gatewayArgs()) {
+            int separator = arg.indexOf('=');
+            properties.put(arg.substring(2, separator < 0 ? arg.length() : separator), separator < 0 ? "true" : arg.substring(separator + 1));
+        }
+
+        return new SpringApplicationBuilder(MainApplication.class)
+                .run(properties.entrySet().stream().map(entry -> "--" + entry.getKey() + "=" + entry.getValue()).toArray(String[]::new));
+    }
+
+    private static void report(LoadTestConfig config, LoadGenerator.Snapshot snapshot, RunCounters before, RunCounters after) {
+        Histogram latencies = snapshot.latencies();
+        long answered = latencies.getTotalCount();
+        double seconds = (after.nanoTime - before.nanoTime) / 1e9;
+
+        System.out.println();
+        System.out.println("=== Throughput ===");
+        System.out.printf("offered     %10.1f requests/s%n", config.rate());
+        System.out.printf("answered    %10.1f requests/s (%d requests)%n", answered / seconds, answered);
+        snapshot.statuses().forEach((status, count) -> System.out.printf("  HTTP %d  %10d%n", status, count));
+        System.out.printf("dropped     %10d (maxInFlight reached)%n", snapshot.dropped());
+        System.out.printf("failed      %10d (no response)%n", snapshot.failed());
+
+        System.out.println("=== Latency (ms, from the scheduled time) ===");
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            System.out.printf("p%-10s %10.2f%n", percentile, latencies.getValueAtPercentile(percentile) / 1e6);
+        }
+        System.out.printf("max         %10.2f%n", latencies.getMaxValue() / 1e6);
+
+        System.out.println("=== Gateway ===");
+        double issued = after.issuedIds - before.issuedIds;
+        double coalesced = after.coalescedIds - before.coalescedIds;
+        double hits = after.cacheHits - before.cacheHits;
+        double misses = after.cacheMisses - before.cacheMisses;
+        System.out.printf("cache hit ratio      %8.3f (%.0f hits, %.0f misses)%n", ratio(hits, hits + misses), hits, misses);
+        System.out.printf("coalescing ratio     %8.3f (%.0f coalesced onto %.0f issued IDs)%n", ratio(coalesced, issued + coalesced), coalesced, issued);
+        System.out.printf("rejected IDs         %8.0f (admission control)%n", after.rejectedIds - before.rejectedIds);
+        double waits = after.queueWaits - before.queueWaits;
+        System.out.printf("mean queue wait      %8.2f ms%n", ratio(after.queueWaitSeconds - before.queueWaitSeconds, waits) * 1000);
+
+        System.out.println("=== Upstream stub ===");
+        long batchedCalls = after.batchedCalls - before.batchedCalls;
+        System.out.printf("batched calls        %8d (%.1f calls/s, %.1f IDs per call)%n", batchedCalls, batchedCalls / seconds,
+                ratio(after.batchedIds - before.batchedIds, batchedCalls));
+        System.out.printf("per-ID calls         %8d (%.1f calls/s)%n", after.perIdCalls - before.perIdCalls, (after.perIdCalls - before.perIdCalls) / seconds);
+        System.out.printf("failed calls         %8d%n", after.failedCalls - before.failedCalls);
+
+        System.out.println("=== JVM ===");
+        after.gcCounts.forEach((collector, count) -> System.out.printf("GC %-24s %6d collections, %8d ms%n", collector,
+                count - before.gcCounts.getOrDefault(collector, 0L),
+                after.gcTimes.get(collector) - before.gcTimes.getOrDefault(collector, 0L)));
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("heap used / committed / max  %d / %d / %d MB%n", heap.getUsed() >> 20, heap.getCommitted() >> 20, heap.getMax() >> 20);
+        long allocated = after.allocatedBytes - before.allocatedBytes;
+        long harnessAllocated = after.harnessAllocatedBytes - before.harnessAllocatedBytes;
+        System.out.printf("allocation rate      %8.1f MB/s (of which %.1f MB/s by the stub and generator)%n",
+                allocated / seconds / (1 << 20), harnessAllocated / seconds / (1 << 20));
+        if (answered > 0) {
+            System.out.printf("allocated / request  %8.1f KB (gateway only)%n", (allocated - harnessAllocated) / (double) answered / 1024);
+        }
+    }
+
+    private static double ratio(double value, double total) {
+        return total > 0 ? value / total : 0;
+    }
+
+    /**
+     * The cumulative counters of the run at one moment, the report being the difference between two of them.
+     */
+    private static final class RunCounters {
+
+        private long nanoTime;
+        private double issuedIds;
+        private double coalescedIds;
+        private double cacheHits;
+        private double cacheMisses;
+        private double rejectedIds;
+        private double queueWaits;
+        private double queueWaitSeconds;
+        private long batchedCalls;
+        private long batchedIds;
+        private long perIdCalls;
+        private long failedCalls;
+        private final Map<String, Long> gcCounts = new LinkedHashMap<>();
+        private final Map<String, Long> gcTimes = new LinkedHashMap<>();
+        private long allocatedBytes;
+        private long harnessAllocatedBytes;
+
+        private static RunCounters capture(MeterRegistry meterRegistry, StubUpstream stub) {
+            RunCounters counters = new RunCounters();
+            counters.nanoTime = System.nanoTime();
+            counters.issuedIds = sum(meterRegistry, "gateway.coalescing.ids", Statistic.COUNT, "outcome", "issued");
+            counters.coalescedIds = sum(meterRegistry, "gateway.coalescing.ids", Statistic.COUNT, "outcome", "coalesced");
+            counters.cacheHits = sum(meterRegistry, "cache.gets", Statistic.COUNT, "cache", "gateway.response", "result", "hit");
+            counters.cacheMisses = sum(meterRegistry, "cache.gets", Statistic.COUNT, "cache", "gateway.response", "result", "miss");
+            counters.rejectedIds = sum(meterRegistry, "gateway.admission.ids", Statistic.COUNT, "outcome", "rejected");
+            for (Timer timer : meterRegistry.find("gateway.stage.queue.wait").timers()) {
+                counters.queueWaits += timer.count();
+                counters.queueWaitSeconds += timer.totalTime(TimeUnit.SECONDS);
+            }
+            counters.batchedCalls = stub.batchedCalls.sum();
+            counters.batchedIds = stub.batchedIds.sum();
+            counters.perIdCalls = stub.perIdCalls.sum();
+            counters.failedCalls = stub.failedCalls.sum();
+
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                counters.gcCounts.put(collector.getName(), collector.getCollectionCount());
+                counters.gcTimes.put(collector.getName(), collector.getCollectionTime());
+            }
+
+            // Summed over the live threads, the event loops and workers of the gateway and the harness living for the whole run
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                long allocatedBytes = Math.max(0, threads.getThreadAllocatedBytes(thread.getId()));
+                counters.allocatedBytes += allocatedBytes;
+                if (thread.getName().startsWith("loadtest-")) {
+                    counters.harnessAllocatedBytes += allocatedBytes;
+                }
+            }
+            return counters;
+        }
+
+        private static double sum(MeterRegistry meterRegistry, String name, Statistic statistic, String... tags) {
+            double sum = 0;
+            for (Meter meter : meterRegistry.find(name).tags(tags).meters()) {
+                for (Measurement measurement : meter.measure()) {
+                    if (measurement.getStatistic() == statistic) {
+                        sum += measurement.getValue();
+                    }
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ecommerce.loadtest;
+
+import java.util.*;
+
+/**
+ * The settings of a load test run, given as key=value arguments (e.g. rate=500 duration=120 skew=1.2),
+ * arguments starting with -- being passed as they are to the gateway (e.g. --QUEUE_API_BATCH_MODE=fixed).
+ *
+ * Traffic:
+ * - rate: requests per second, sent open-loop (Poisson arrivals, whatever the response times),
+ * - warmup / duration: seconds of traffic before and during the measurement,
+ * - endpoints, endpointsPerRequest, idsPerEndpoint: the endpoints of each request, picked at random, and their IDs,
+ * - idSpace, skew: the IDs are drawn from idSpace IDs with a Zipf popularity of exponent skew (0 = uniform),
+ * - deadline: the deadline in ms of each gateway request, maxInFlight: the requests in flight beyond which new ones are dropped.
+ *
+ * Stub upstream:
+ * - stubLatencyMedian / stubLatencyP99: the log-normal latency in ms of each upstream call,
+ * - stubErrorRate: the share of upstream calls answered 500, stubNotFoundRate: the share of IDs unknown to the upstream,
+ * - stubBatch: false to answer 404 to the batched contract, so the gateway falls back to per-ID calls.
+ */
+public record LoadTestConfig(
+        double rate,
+        int warmup,
+        int duration,
+        List<String> endpoints,
+        int endpointsPerRequest,
+        int idsPerEndpoint,
+        int idSpace,
+        double skew,
+        long deadline,
+        int maxInFlight,
+        double stubLatencyMedian,
+        double stubLatencyP99,
+        double stubErrorRate,
+        double stubNotFoundRate,
+        boolean stubBatch,
+        List<String> gatewayArgs) {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("rate", "200"),
+            Map.entry("warmup", "10"),
+            Map.entry("duration", "60"),
+            Map.entry("endpoints", "customer,product,inventory,order,shipment"),
+            Map.entry("endpointsPerRequest", "2"),
+            Map.entry("idsPerEndpoint", "5"),
+            Map.entry("idSpace", "100000"),
+            Map.entry("skew", "1.0"),
+            Map.entry("deadline", "2000"),
+            Map.entry("maxInFlight", "10000"),
+            Map.entry("stubLatencyMedian", "50"),
+            Map.entry("stubLatencyP99", "250"),
+            Map.entry("stubErrorRate", "0.01"),
+            Map.entry("stubNotFoundRate", "0.05"),
+            Map.entry("stubBatch", "true"));
+
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> settings = new HashMap<>(DEFAULTS);
+        List<String> gatewayArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                gatewayArgs.add(arg);
+                continue;
+            }
+
+            int separator = arg.indexOf('=');
+            if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown load test argument: " + arg + ", expected one of " + new TreeSet<>(DEFAULTS.keySet()));
+            }
+            settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        List<String> endpoints = List.of(settings.get("endpoints").split(","));
+        int endpointsPerRequest = Integer.parseInt(settings.get("endpointsPerRequest"));
+        if (endpointsPerRequest < 1 || endpointsPerRequest > endpoints.size()) {
+            throw new IllegalArgumentException("endpointsPerRequest must be between 1 and the number of endpoints: " + endpointsPerRequest);
+        }
+
+        return new LoadTestConfig(
+                Double.parseDouble(settings.get("rate")),
+                Integer.parseInt(settings.get("warmup")),
+                Integer.parseInt(settings.get("duration")),
+                endpoints,
+                endpointsPerRequest,
+                Integer.parseInt(settings.get("idsPerEndpoint")),
+                Integer.parseInt(settings.get("idSpace")),
+                Double.parseDouble(settings.get("skew")),
+                Long.parseLong(settings.get("deadline")),
+                Integer.parseInt(settings.get("maxInFlight")),
+                Double.parseDouble(settings.get("stubLatencyMedian")),
+                Double.parseDouble(settings.get("stubLatencyP99")),
+                Double.parseDouble(settings.get("stubErrorRate")),
+                Double.parseDouble(settings.get("stubNotFoundRate")),
+                Boolean.parseBoolean(settings.get("stubBatch")),
+                List.copyOf(gatewayArgs));
+    }
+}
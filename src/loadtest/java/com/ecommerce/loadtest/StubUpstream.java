@@ -0,0 +1,119 @@
+package com.ecommerce.loadtest;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stub of the internal services, on its own event loops, answering both upstream contracts of the gateway:
+ * - batched: GET /internal/{endpoint}?ids=a,b,c with a JSON object of the known IDs,
+ * - per ID: GET /internal/{endpoint}/{id} with the JSON array of the ID, or an empty body when it is unknown.
+ *
+ * Each call is delayed by a log-normal latency fitted on the configured median and p99, and fails with a 500
+ * at the configured error rate. An ID is unknown when its last two digits fall within the not found rate,
+ * so the same ID is always known, or always unknown.
+ */
+public class StubUpstream {
+
+    private static final double Z_99 = 2.326; // The standard normal quantile of the p99
+
+    private final LoadTestConfig config;
+    private final double mu;
+    private final double sigma;
+
+    private final LoopResources loopResources = LoopResources.create("loadtest-stub", 1, true);
+    private final Scheduler timer = Schedulers.newSingle("loadtest-stub-timer", true);
+    private DisposableServer server;
+
+    final LongAdder batchedCalls = new LongAdder();
+    final LongAdder batchedIds = new LongAdder();
+    final LongAdder perIdCalls = new LongAdder();
+    final LongAdder failedCalls = new LongAdder();
+
+    public StubUpstream(LoadTestConfig config) {
+        this.config = config;
+        this.mu = Math.log(config.stubLatencyMedian());
+        this.sigma = Math.max(0, (Math.log(config.stubLatencyP99()) - mu) / Z_99);
+    }
+
+    public int start() {
+        server = HttpServer.create()
+                .port(0)
+                .runOn(loopResources)
+                .route(routes -> routes
+                        .get("/internal/{endpoint}", this::batched)
+                        .get("/internal/{endpoint}/{id}", this::perId))
+                .bindNow();
+        return server.port();
+    }
+
+    public void stop() {
+        server.disposeNow();
+        loopResources.dispose();
+        timer.dispose();
+    }
+
+    private Mono<Void> batched(HttpServerRequest request, HttpServerResponse response) {
+        if (!config.stubBatch()) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+
+        List<String> ids = new QueryStringDecoder(request.uri()).parameters().getOrDefault("ids", List.of());
+        List<String> splitIds = ids.stream().flatMap(value -> List.of(value.split(",")).stream()).toList();
+        batchedCalls.increment();
+        batchedIds.add(splitIds.size());
+
+        StringJoiner body = new StringJoiner(",", "{", "}");
+        for (String id : splitIds) {
+            if (isKnown(id)) {
+                body.add("\"" + id + "\":" + value(id));
+            }
+        }
+        return answer(response, body.toString());
+    }
+
+    private Mono<Void> perId(HttpServerRequest request, HttpServerResponse response) {
+        perIdCalls.increment();
+        String id = request.param("id");
+        return answer(response, isKnown(id) ? value(id) : "");
+    }
+
+    private Mono<Void> answer(HttpServerResponse response, String body) {
+        boolean failed = ThreadLocalRandom.current().nextDouble() < config.stubErrorRate();
+        return Mono.delay(sampleLatency(), timer)
+                .then(Mono.defer(() -> {
+                    if (failed) {
+                        failedCalls.increment();
+                        return response.status(HttpResponseStatus.INTERNAL_SERVER_ERROR).send();
+                    }
+                    return response.header("Content-Type", "application/json").sendString(Mono.just(body)).then();
+                }));
+    }
+
+    private Duration sampleLatency() {
+        double latency = Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofNanos((long) (latency * 1_000_000));
+    }
+
+    private boolean isKnown(String id) {
+        int lastDigits = Math.floorMod(id.hashCode(), 100);
+        return lastDigits >= config.stubNotFoundRate() * 100;
+    }
+
+    private static String value(String id) {
+        return "[\"Item " + id + "\",99.99,\"222222220\"]";
+    }
+}
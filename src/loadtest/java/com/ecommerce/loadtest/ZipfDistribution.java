@@ -0,0 +1,32 @@
+package com.ecommerce.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws ranks from 0 to size - 1 with a Zipf popularity: rank k is drawn proportionally to 1 / (k + 1)^skew,
+ * a skew of 0 being uniform and a skew around 1 being typical of catalog traffic (a few hot IDs, a long tail).
+ *
+ * The cumulative distribution is computed once, each draw being a binary search in it.
+ */
+public class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double skew) {
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    public int sample() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.config;
+
+/**
+ * An internal endpoint served by the gateway, as declared in GATEWAY_API_ENDPOINTS.
+ *
+ * Only what the gateway needs up front is held here: the rest of the endpoint tuning (batching, cache, upstream URL
+ * and connections, isolation, ...) is resolved on demand by the EndpointPropertyResolver from the KEY.endpoint overrides.
+ *
+ * @param name The endpoint name, used as gateway request parameter and as upstream path.
+ * @param idType The type of its IDs.
+ */
+public record EndpointDefinition(String name, IdType idType) {
+}
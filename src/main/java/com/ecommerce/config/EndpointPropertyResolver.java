@@ -0,0 +1,29 @@
+package com.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+@Component
+public class EndpointPropertyResolver {
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * Resolves a setting for a particular internal endpoint.
+     *
+     * A per-endpoint override is looked up first as "KEY.endpoint" (e.g. CACHE_API_TTL.product = 60000),
+     * falling back to the global "KEY" (e.g. CACHE_API_TTL = 30000) from application.properties.
+     *
+     * @param key The global property name.
+     * @param endpoint The internal endpoint.
+     * @param type The expected property type.
+     * @return The resolved value.
+     * @throws IllegalStateException if neither the override nor the global property is defined.
+     */
+    public <T> T get(String key, String endpoint, Class<T> type) {
+        T value = environment.getProperty(key + "." + endpoint, type);
+        return value != null ? value : environment.getRequiredProperty(key, type);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ecommerce.config;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+@Component
+public class EndpointRegistry {
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    @Value("${GATEWAY_API_ENDPOINTS}")
+    private List<String> endpointNames; // e.g., customer,product,inventory,order,shipment
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    /**
+     * The internal endpoints, in the order of GATEWAY_API_ENDPOINTS.
+     * Built once at startup and never modified afterward, so it is read without any synchronization.
+     */
+    private Map<String, EndpointDefinition> endpoints;
+
+    /**
+     * Builds the definition of every endpoint listed in GATEWAY_API_ENDPOINTS, its ID type coming from
+     * GATEWAY_API_ID_TYPE (overridable per endpoint, e.g. GATEWAY_API_ID_TYPE.customer = alphanumeric).
+     *
+     * Adding an internal backend is then a matter of configuration: listing it in GATEWAY_API_ENDPOINTS makes the gateway
+     * accept it as request parameter, create its queue and batcher, and call it on UPSTREAM_API_BASE_URL + name,
+     * each of these being tuned through its own KEY.endpoint overrides.
+     *
+     * @throws IllegalStateException if an endpoint is declared twice or its ID type is unknown.
+     */
+    @PostConstruct
+    private void initEndpoints() {
+        Map<String, EndpointDefinition> definitions = new LinkedHashMap<>();
+        for (String name : endpointNames) {
+            String idType = endpointProperties.get("GATEWAY_API_ID_TYPE", name, String.class);
+            EndpointDefinition definition;
+            try {
+                definition = new EndpointDefinition(name, IdType.valueOf(idType.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Unknown GATEWAY_API_ID_TYPE for endpoint " + name + ": " + idType, e);
+            }
+            if (definitions.putIfAbsent(name, definition) != null) {
+                throw new IllegalStateException("Endpoint declared twice in GATEWAY_API_ENDPOINTS: " + name);
+            }
+        }
+        endpoints = Collections.unmodifiableMap(definitions);
+        log.info("Registered internal endpoint(s) {}", endpoints.values());
+    }
+
+    public Collection<EndpointDefinition> getEndpoints() {
+        return endpoints.values();
+    }
+
+    public Set<String> getNames() {
+        return endpoints.keySet();
+    }
+
+    /**
+     * @return The definition of the endpoint, or null if it is not registered.
+     */
+    public EndpointDefinition get(String name) {
+        return endpoints.get(name);
+    }
+}
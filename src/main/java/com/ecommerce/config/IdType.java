@@ -0,0 +1,10 @@
+package com.ecommerce.config;
+
+/**
+ * The type of the IDs of an internal endpoint, deciding how they are validated before entering its queue
+ * (GATEWAY_API_ID_TYPE).
+ */
+public enum IdType {
+    NUMERIC,        // Positive integers, normalized to their canonical form (e.g. product, order)
+    ALPHANUMERIC    // ASCII letters and digits, kept as they are (e.g. customer)
+}
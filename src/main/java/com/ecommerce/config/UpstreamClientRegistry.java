@@ -0,0 +1,85 @@
+package com.ecommerce.config;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class UpstreamClientRegistry {
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    /**
+     * The Concurrent Hash Map which contains the WebClient per internal endpoint.
+     * Each endpoint has its own base URL and its own connection pool, so that a slow internal service
+     * only exhausts its own connections.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
+
+    private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+
+    public WebClient getWebClient(String endpoint) {
+        return webClients.computeIfAbsent(endpoint, this::createWebClient);
+    }
+
+    /**
+     * Builds the WebClient of an endpoint from its UPSTREAM_API_* settings:
+     * - a dedicated connection pool ("gateway-{endpoint}"), bounded by UPSTREAM_API_MAX_CONNECTIONS connections
+     *   and UPSTREAM_API_PENDING_ACQUIRE_MAX calls waiting for one, its idle and old connections being evicted in background,
+     * - HTTP/1.1 with keep-alive, or h2c (HTTP/2 cleartext, prior knowledge) multiplexing the calls over a few connections,
+     * - Reactor Netty pool and client metrics, the URI tag being the endpoint so per-ID paths do not explode the tags.
+     *
+     * @param endpoint The internal endpoint.
+     * @return The WebClient, whose base URL is UPSTREAM_API_BASE_URL.
+     */
+    private WebClient createWebClient(String endpoint) {
+        int maxConnections = endpointProperties.get("UPSTREAM_API_MAX_CONNECTIONS", endpoint, Integer.class);
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("gateway-" + endpoint)
+                .maxConnections(maxConnections > 0 ? maxConnections : ConnectionProvider.DEFAULT_POOL_MAX_CONNECTIONS)
+                .pendingAcquireMaxCount(endpointProperties.get("UPSTREAM_API_PENDING_ACQUIRE_MAX", endpoint, Integer.class))
+                .pendingAcquireTimeout(getDuration("UPSTREAM_API_PENDING_ACQUIRE_TIMEOUT", endpoint))
+                .maxIdleTime(getDuration("UPSTREAM_API_MAX_IDLE_TIME", endpoint))
+                .maxLifeTime(getDuration("UPSTREAM_API_MAX_LIFE_TIME", endpoint))
+                .evictInBackground(getDuration("UPSTREAM_API_EVICT_INTERVAL", endpoint))
+                .metrics(true)
+                .build();
+        connectionProviders.put(endpoint, connectionProvider);
+
+        boolean h2c = endpointProperties.get("UPSTREAM_API_H2C", endpoint, Boolean.class);
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(h2c ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .keepAlive(endpointProperties.get("UPSTREAM_API_KEEP_ALIVE", endpoint, Boolean.class))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, endpointProperties.get("UPSTREAM_API_CONNECT_TIMEOUT", endpoint, Integer.class))
+                .metrics(true, uri -> "/" + endpoint);
+
+        return webClientBuilder.clone()
+                .baseUrl(endpointProperties.get("UPSTREAM_API_BASE_URL", endpoint, String.class))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    private Duration getDuration(String key, String endpoint) {
+        return Duration.ofMillis(endpointProperties.get(key, endpoint, Long.class));
+    }
+
+    @PreDestroy
+    private void disposeConnectionProviders() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+}
@@ -1,14 +0,0 @@
-package com.ecommerce.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.reactive.function.client.WebClient;
-
-@Configuration
-public class WebClientConfiguration {
-
-    @Bean
-    public WebClient webClient(){
-        return WebClient.builder().baseUrl("http://localhost:8080/internal/").build();
-    }
-}
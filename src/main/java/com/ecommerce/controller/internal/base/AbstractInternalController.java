@@ -4,9 +4,12 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -30,4 +33,33 @@ public abstract class AbstractInternalController<T> {
         return Mono.delay(Duration.ofMillis(delay)).thenReturn(responseEntity);
     }
 
+    /**
+     * Batched lookup, e.g. GET /internal/product?ids=100000000,123456789
+     *
+     * Answers a whole batch of IDs with a single round trip, as a JSON object keyed by ID.
+     * IDs which are not found are simply missing from the returned object.
+     *
+     * NOTE: values are serialized by Jackson as part of the map, so transformResponse (which exists to hand-wrap
+     * plain String bodies for the single ID endpoint) is intentionally not applied here.
+     */
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<Map<String, T>>> getByIds(@RequestParam List<String> ids) {
+        int delay = ThreadLocalRandom.current().nextInt(250, 750); // Same latency profile as a single ID lookup
+        Map<String, T> mockData = getMockData();
+
+        Map<String, T> values = new LinkedHashMap<>();
+        for (String id : ids) {
+            T value = mockData.get(id);
+            if (value != null) {
+                values.put(id, value);
+            }
+        }
+
+        ResponseEntity<Map<String, T>> responseEntity = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(values);
+
+        return Mono.delay(Duration.ofMillis(delay)).thenReturn(responseEntity);
+    }
+
 }
@@ -1,19 +1,38 @@
 package com.ecommerce.controller.master;
 
+import com.ecommerce.config.EndpointDefinition;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.config.IdType;
+import com.ecommerce.service.master.metrics.PipelineMetrics;
+import com.ecommerce.service.master.queue.EndpointResponse;
+import com.ecommerce.service.master.queue.QueueRejectedException;
+import com.ecommerce.service.master.queue.RequestClass;
 import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import com.ecommerce.service.master.queue.ResponseStatus;
+import com.ecommerce.service.master.queue.StreamedIdResponse;
+import com.ecommerce.util.BulkRequestParser;
+import com.ecommerce.util.EndpointIds;
 import com.ecommerce.util.GatewayParser;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
 
 @RestController
 @RequestMapping("/gateway")
@@ -21,50 +40,366 @@ public class GatewayController {
 
     private final Logger log = LogManager.getLogger(this.getClass());
 
+    @Value("${GATEWAY_API_DEADLINE}")
+    private long gatewayApiDeadline; // e.g., 10000 ms
+
+    @Value("${GATEWAY_API_DEADLINE_MAX}")
+    private long gatewayApiDeadlineMax; // e.g., 30000 ms
+
+    @Value("${GATEWAY_API_LOG_SAMPLE_RATE}")
+    private double logSampleRate; // e.g., 0.01 = 1% of the requests
+
+    @Value("${GATEWAY_API_BULK_CHUNK_SIZE}")
+    private int bulkChunkSize; // e.g., 500 IDs
+
+    @Value("${GATEWAY_API_BULK_CONCURRENCY}")
+    private int bulkConcurrency; // e.g., 4 chunks
+
+    @Value("${GATEWAY_API_BULK_MAX_IDS}")
+    private int bulkMaxIds; // e.g., 100000 IDs
+
     @Autowired
     private RequestQueueProcessor requestHandler;
 
     @Autowired
     private GatewayParser requestParser;
 
+    @Autowired
+    private BulkRequestParser bulkRequestParser;
+
+    @Autowired
+    private EndpointRegistry endpointRegistry;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    /**
+     * Aggregates the data of the requested IDs from every internal endpoint.
+     *
+     * Each endpoint of the EndpointRegistry is a query parameter holding comma-separated IDs (e.g. ?product=1,2&order=3),
+     * validated according to its ID type.
+     *
+     * The whole request is bounded by a deadline, in ms, given by the X-Request-Deadline header or the deadline
+     * query parameter (GATEWAY_API_DEADLINE by default, capped at GATEWAY_API_DEADLINE_MAX).
+     * IDs not answered by then are returned with a null value.
+     *
+     * The X-Request-Class header (interactive or bulk, interactive by default) selects the lanes the IDs are queued in:
+     * interactive IDs are flushed within QUEUE_API_INTERACTIVE_MAX_WAIT and take most of the batches under load.
+     *
+     * With partial=true, the response is wrapped as {"data": {...}, "status": {...}} where status holds the outcome
+     * of each ID per endpoint (OK, NOT_FOUND, TIMEOUT, ERROR or UNAVAILABLE).
+     *
+     * When an endpoint queue is overloaded, the request is shed with 429 or 503 and a Retry-After header.
+     */
     @GetMapping
-    public Mono<ResponseEntity<Map<String, Map<String, List<?>>>>> getAggregatedData(
-            @RequestParam(required = false) List<String> customer,
-            @RequestParam(required = false) List<String> product,
-            @RequestParam(required = false) List<String> inventory,
-            @RequestParam(required = false) List<String> order,
-            @RequestParam(required = false) List<String> shipment) {
-
-        Map<String, List<String>> requestMap = new HashMap<>();
-        Optional.ofNullable(customer).ifPresent(c -> requestMap.put("customer", requestParser.parseAlphanumericCustomerIds(c)));
-        Optional.ofNullable(product).ifPresent(p -> requestMap.put("product", requestParser.parseToBigDecimals(p)));
-        Optional.ofNullable(inventory).ifPresent(i -> requestMap.put("inventory", requestParser.parseToBigDecimals(i)));
-        Optional.ofNullable(order).ifPresent(o -> requestMap.put("order", requestParser.parseToBigDecimals(o)));
-        Optional.ofNullable(shipment).ifPresent(s -> requestMap.put("shipment", requestParser.parseToBigDecimals(s)));
+    public Mono<ResponseEntity<Map<String, ?>>> getAggregatedData(
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestParam(name = "deadline", required = false) Long deadlineParam,
+            @RequestHeader(name = "X-Request-Deadline", required = false) Long deadlineHeader,
+            @RequestHeader(name = "X-Request-Class", required = false) String requestClassHeader,
+            @RequestParam(defaultValue = "false") boolean partial) {
+
+        Map<String, List<String>> requestMap = parseRequest(params);
+        RequestClass requestClass = resolveRequestClass(requestClassHeader, RequestClass.INTERACTIVE);
 
         List<String> nonNullEndpoints = new ArrayList<>(requestMap.keySet());
-        log.info("Starting processing for endpoint(s) {} at {}", nonNullEndpoints, requestParser.getFormattedCurrentTime());
+        boolean logged = isLogSampled();
+        if (logged) {
+            log.info("Starting processing for endpoint(s) {} at {}", nonNullEndpoints, requestParser.getFormattedCurrentTime());
+        }
         long startTime = System.currentTimeMillis();
 
-        // The List of responses, each being a Mono of a Map is populated with the answer
-        List<Mono<Map.Entry<String, Map<String, List<?>>>>> responseMonos =
+        Duration deadline = resolveDeadline(deadlineHeader != null ? deadlineHeader : deadlineParam);
+
+        // The List of responses, each being a Mono of an EndpointResponse is populated with the answer
+        List<Mono<EndpointResponse>> responseMonos =
                 requestMap
                         .entrySet()
                         .stream()
-                        .map(entry -> requestHandler.queueAndProcessRequest(entry.getKey(), entry.getValue()))
+                        .map(entry -> requestHandler.queueAndProcessRequest(entry.getKey(), entry.getValue(), deadline, requestClass))
                         .toList();
 
-        // The List of Mono<Map<..>> responses are zipped together in 1 single Mono<ResponseEntity<..>
+        // The List of Mono<EndpointResponse> responses are zipped together in 1 single Mono<ResponseEntity<..>
         return Mono.zip(responseMonos,
-                        results ->
+                        results -> buildResponse(
                                 Arrays.stream(results)
-                                // Ensures Mono.zip results are correctly extracted and structured into a Map<String, Map<String, List<?>>>
-                                .map(result -> (Map.Entry<String, Map<String, List<?>>>) result)
-                                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)))
+                                // Ensures Mono.zip results are correctly extracted as EndpointResponse
+                                .map(result -> (EndpointResponse) result)
+                                .toList(), partial))
                                 .doOnSuccess(response -> {
-                                    long elapsedTime = System.currentTimeMillis() - startTime;
-                                    log.info("Finished processing for endpoint(s) {} at {}. Total time: {} ms", nonNullEndpoints, requestParser.getFormattedCurrentTime(), elapsedTime);
+                                    if (logged) {
+                                        long elapsedTime = System.currentTimeMillis() - startTime;
+                                        log.info("Finished processing for endpoint(s) {} at {}. Total time: {} ms", nonNullEndpoints, requestParser.getFormattedCurrentTime(), Unbox.box(elapsedTime));
+                                    }
                                 })
-                                .map(ResponseEntity::ok);
+                                .map(ResponseEntity::<Map<String, ?>>ok)
+                                .onErrorResume(QueueRejectedException.class, e -> {
+                                    log.warn("Rejected processing for endpoint(s) {}: {}", nonNullEndpoints, e.getMessage());
+                                    return Mono.just(rejected(e));
+                                });
+    }
+
+    /**
+     * Streaming variant of getAggregatedData, selected by an Accept header of application/x-ndjson or text/event-stream.
+     *
+     * Each ID is emitted as {"endpoint": ..., "id": ..., "data": ..., "status": ...} as soon as it is known,
+     * so the first IDs do not wait for the slowest ones and nothing is collected in memory.
+     * The stream completes once every ID has been emitted, those not answered within the deadline being emitted as TIMEOUT.
+     * The X-Request-Class header is handled as in getAggregatedData.
+     *
+     * When an endpoint queue is overloaded, the request is shed with 429 or 503 and a Retry-After header, before anything is streamed.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Mono<ResponseEntity<Flux<StreamedIdResponse>>> streamAggregatedData(
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestParam(name = "deadline", required = false) Long deadlineParam,
+            @RequestHeader(name = "X-Request-Deadline", required = false) Long deadlineHeader,
+            @RequestHeader(name = "X-Request-Class", required = false) String requestClassHeader) {
+
+        Map<String, List<String>> requestMap = parseRequest(params);
+        RequestClass requestClass = resolveRequestClass(requestClassHeader, RequestClass.INTERACTIVE);
+
+        List<String> nonNullEndpoints = new ArrayList<>(requestMap.keySet());
+        boolean logged = isLogSampled();
+        if (logged) {
+            log.info("Starting streaming for endpoint(s) {} at {}", nonNullEndpoints, requestParser.getFormattedCurrentTime());
+        }
+        long startTime = System.currentTimeMillis();
+
+        Duration deadline = resolveDeadline(deadlineHeader != null ? deadlineHeader : deadlineParam);
+
+        List<Mono<Flux<StreamedIdResponse>>> streamMonos =
+                requestMap
+                        .entrySet()
+                        .stream()
+                        .map(entry -> requestHandler.streamRequest(entry.getKey(), entry.getValue(), deadline, requestClass))
+                        .toList();
+
+        // Every endpoint is admitted first, then their streams are merged so the IDs are emitted in the order they resolve
+        return Mono.zip(streamMonos,
+                        results -> Flux.merge(
+                                Arrays.stream(results)
+                                .map(result -> (Flux<?>) result)
+                                .toList())
+                                .cast(StreamedIdResponse.class)
+                                .doOnComplete(() -> {
+                                    if (logged) {
+                                        long elapsedTime = System.currentTimeMillis() - startTime;
+                                        log.info("Finished streaming for endpoint(s) {} at {}. Total time: {} ms", nonNullEndpoints, requestParser.getFormattedCurrentTime(), Unbox.box(elapsedTime));
+                                    }
+                                }))
+                                .defaultIfEmpty(Flux.empty())
+                                .map(ResponseEntity::ok)
+                                .onErrorResume(QueueRejectedException.class, e -> {
+                                    log.warn("Rejected streaming for endpoint(s) {}: {}", nonNullEndpoints, e.getMessage());
+                                    return Mono.just(rejected(e));
+                                });
+    }
+
+    /**
+     * Bulk variant of getAggregatedData, for ID sets too large for a query string.
+     *
+     * The body is a JSON object of endpoint to ID arrays, e.g. {"product": ["100000000", "123"], "customer": ["a1"]},
+     * of at most GATEWAY_API_BULK_MAX_IDS IDs. It is parsed as it is received and its IDs are fed to the queues in chunks
+     * of GATEWAY_API_BULK_CHUNK_SIZE IDs, at most GATEWAY_API_BULK_CONCURRENCY chunks being processed at the same time,
+     * so a large body neither floods the queues nor waits to be fully received before its first IDs are enqueued.
+     * The deadline covers the whole request, the chunks processed last only getting the time left.
+     * Its IDs are queued in the bulk lanes, unless the X-Request-Class header says interactive.
+     *
+     * The response is the same as getAggregatedData's, partial=true included. A malformed body is answered 400 Bad Request,
+     * and when an endpoint queue is overloaded, the request is shed with 429 or 503 and a Retry-After header.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, ?>>> postAggregatedData(
+            @RequestBody Flux<DataBuffer> body,
+            @RequestParam(name = "deadline", required = false) Long deadlineParam,
+            @RequestHeader(name = "X-Request-Deadline", required = false) Long deadlineHeader,
+            @RequestHeader(name = "X-Request-Class", required = false) String requestClassHeader,
+            @RequestParam(defaultValue = "false") boolean partial) {
+
+        RequestClass requestClass = resolveRequestClass(requestClassHeader, RequestClass.BULK);
+        boolean logged = isLogSampled();
+        if (logged) {
+            log.info("Starting bulk processing at {}", requestParser.getFormattedCurrentTime());
+        }
+        long startTime = System.currentTimeMillis();
+
+        long deadlineAt = System.nanoTime() + resolveDeadline(deadlineHeader != null ? deadlineHeader : deadlineParam).toNanos();
+
+        return bulkRequestParser.parse(body, endpointRegistry.getNames(), bulkChunkSize, bulkMaxIds)
+                .map(this::parseChunk)
+                .flatMap(chunk -> requestHandler.queueAndProcessRequest(chunk.endpoint(), chunk.ids(), remaining(deadlineAt), requestClass),
+                        bulkConcurrency)                                                                                // Bounded, so a large body does not flood the queues
+                .collectList()
+                .map(responses -> buildResponse(responses, partial))
+                .doOnSuccess(response -> {
+                    if (logged) {
+                        long elapsedTime = System.currentTimeMillis() - startTime;
+                        log.info("Finished bulk processing at {}. Total time: {} ms", requestParser.getFormattedCurrentTime(), Unbox.box(elapsedTime));
+                    }
+                })
+                .map(ResponseEntity::<Map<String, ?>>ok)
+                .onErrorResume(QueueRejectedException.class, e -> {
+                    log.warn("Rejected bulk processing: {}", e.getMessage());
+                    return Mono.just(rejected(e));
+                });
+    }
+
+    /**
+     * Streaming variant of postAggregatedData, selected by an Accept header of application/x-ndjson or text/event-stream.
+     *
+     * Each ID is emitted as in streamAggregatedData as soon as it is known. The chunks are admitted one by one while
+     * the response is already streaming, so the IDs of a chunk shed by an overloaded queue are emitted as REJECTED
+     * instead of failing the whole response. The X-Request-Class header is handled as in postAggregatedData.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<StreamedIdResponse> streamPostedData(
+            @RequestBody Flux<DataBuffer> body,
+            @RequestParam(name = "deadline", required = false) Long deadlineParam,
+            @RequestHeader(name = "X-Request-Deadline", required = false) Long deadlineHeader,
+            @RequestHeader(name = "X-Request-Class", required = false) String requestClassHeader) {
+
+        RequestClass requestClass = resolveRequestClass(requestClassHeader, RequestClass.BULK);
+        boolean logged = isLogSampled();
+        if (logged) {
+            log.info("Starting bulk streaming at {}", requestParser.getFormattedCurrentTime());
+        }
+        long startTime = System.currentTimeMillis();
+
+        long deadlineAt = System.nanoTime() + resolveDeadline(deadlineHeader != null ? deadlineHeader : deadlineParam).toNanos();
+
+        return bulkRequestParser.parse(body, endpointRegistry.getNames(), bulkChunkSize, bulkMaxIds)
+                .map(this::parseChunk)
+                .flatMap(chunk -> requestHandler.streamRequest(chunk.endpoint(), chunk.ids(), remaining(deadlineAt), requestClass)
+                        .flatMapMany(stream -> stream)
+                        .onErrorResume(QueueRejectedException.class, e -> {
+                            log.warn("Rejected a bulk chunk of {} IDs for endpoint [{}]: {}", chunk.ids().size(), chunk.endpoint(), e.getMessage());
+                            return Flux.fromIterable(chunk.ids())
+                                    .map(id -> new StreamedIdResponse(chunk.endpoint(), id, null, ResponseStatus.REJECTED));
+                        }),
+                        bulkConcurrency)                                                                                // Bounded, so a large body does not flood the queues
+                .doOnComplete(() -> {
+                    if (logged) {
+                        long elapsedTime = System.currentTimeMillis() - startTime;
+                        log.info("Finished bulk streaming at {}. Total time: {} ms", requestParser.getFormattedCurrentTime(), Unbox.box(elapsedTime));
+                    }
+                });
+    }
+
+    /**
+     * Collects and validates the IDs of every registered endpoint present in the query parameters, in the order of the registry.
+     * Each parameter may be repeated and hold comma-separated IDs (?product=1,2&product=3), other parameters are ignored.
+     */
+    private Map<String, List<String>> parseRequest(MultiValueMap<String, String> params) {
+        Map<String, List<String>> requestMap = new LinkedHashMap<>();
+        for (EndpointDefinition endpoint : endpointRegistry.getEndpoints()) {
+            List<String> values = params.get(endpoint.name());
+            if (values == null) {
+                continue;
+            }
+
+            List<String> ids = new ArrayList<>();
+            for (String value : values) {
+                for (String id : StringUtils.commaDelimitedListToStringArray(value)) {
+                    ids.add(id.trim());
+                }
+            }
+            requestMap.put(endpoint.name(), parse(endpoint.name(), ids, endpointIds -> requestParser.parseIds(endpoint.idType(), endpointIds)));
+        }
+        return requestMap;
+    }
+
+    /**
+     * Validates the IDs of a bulk request chunk the same way as the query parameters of its endpoint,
+     * an invalid ID failing the request with a ServerWebInputException (400 Bad Request) like a malformed body.
+     */
+    private EndpointIds parseChunk(EndpointIds chunk) {
+        IdType idType = endpointRegistry.get(chunk.endpoint()).idType();
+        try {
+            return new EndpointIds(chunk.endpoint(), parse(chunk.endpoint(), chunk.ids(), ids -> requestParser.parseIds(idType, ids)));
+        } catch (RuntimeException e) {
+            // An invalid ID is a malformed body like any other (400 Bad Request), not a failure of the gateway
+            throw new ServerWebInputException("Invalid ID in the bulk request body for endpoint [" + chunk.endpoint() + "]: " + e.getMessage(), null, e);
+        }
+    }
+
+    /**
+     * The time left until the deadline of a bulk request, at least 1 ms so the IDs left are still answered (as TIMEOUT).
+     */
+    private Duration remaining(long deadlineAt) {
+        return Duration.ofNanos(Math.max(deadlineAt - System.nanoTime(), 1_000_000));
+    }
+
+    /**
+     * Whether the timing lines of a request are logged: only GATEWAY_API_LOG_SAMPLE_RATE of the requests are,
+     * so the logs keep a trace of the traffic without costing every request (the timings are in the metrics anyway).
+     */
+    private boolean isLogSampled() {
+        return logSampleRate >= 1 || (logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate);
+    }
+
+    /**
+     * The shedding response of a request rejected by the admission control, with its Retry-After header in seconds.
+     */
+    private <T> ResponseEntity<T> rejected(QueueRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .build();
+    }
+
+    /**
+     * Validates the IDs of an endpoint, the time it takes being recorded as the parse stage.
+     */
+    private List<String> parse(String endpoint, List<String> ids, UnaryOperator<List<String>> parser) {
+        long startTime = System.nanoTime();
+        List<String> parsedIds = parser.apply(ids);
+        pipelineMetrics.recordParse(endpoint, System.nanoTime() - startTime);
+        return parsedIds;
+    }
+
+    /**
+     * The class of a request from its X-Request-Class header, an unknown class being a client error (400 Bad Request).
+     */
+    private RequestClass resolveRequestClass(String requestClassHeader, RequestClass defaultClass) {
+        try {
+            return RequestClass.from(requestClassHeader, defaultClass);
+        } catch (IllegalArgumentException e) {
+            throw new ServerWebInputException(e.getMessage());
+        }
+    }
+
+    /**
+     * The deadline of a request, GATEWAY_API_DEADLINE by default and capped at GATEWAY_API_DEADLINE_MAX,
+     * a non-positive deadline being a client error (400 Bad Request).
+     */
+    private Duration resolveDeadline(Long requestedDeadline) {
+        if (requestedDeadline == null) {
+            return Duration.ofMillis(gatewayApiDeadline);
+        }
+        if (requestedDeadline <= 0) {
+            throw new ServerWebInputException("The request deadline must be a positive number of ms.");
+        }
+        return Duration.ofMillis(Math.min(requestedDeadline, gatewayApiDeadlineMax));
+    }
+
+    /**
+     * Structures the responses of each endpoint into a Map<String, Map<String, List<?>>>,
+     * wrapped along with the per-ID status map in partial mode.
+     * The responses of the same endpoint (the chunks of a bulk request) are merged together.
+     */
+    private Map<String, ?> buildResponse(List<EndpointResponse> responses, boolean partial) {
+        Map<String, Map<String, List<?>>> data = new HashMap<>();
+        Map<String, Map<String, ResponseStatus>> status = new HashMap<>();
+        for (EndpointResponse response : responses) {
+            data.computeIfAbsent(response.endpoint(), endpoint -> new HashMap<>()).putAll(response.data());
+            if (partial) {
+                status.computeIfAbsent(response.endpoint(), endpoint -> new HashMap<>()).putAll(response.status());
+            }
+        }
+        if (!partial) {
+            return data;
+        }
+        return Map.of("data", data, "status", status);
     }
 }
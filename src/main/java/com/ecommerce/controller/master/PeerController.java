@@ -0,0 +1,97 @@
+package com.ecommerce.controller.master;
+
+import com.ecommerce.config.EndpointDefinition;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.service.master.cluster.ClusterPeers;
+import com.ecommerce.service.master.queue.QueueRejectedException;
+import com.ecommerce.service.master.queue.RequestClass;
+import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import com.ecommerce.service.master.queue.ResponseStatus;
+import com.ecommerce.util.GatewayParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/gateway/peer")
+public class PeerController {
+
+    @Autowired
+    private RequestQueueProcessor requestHandler;
+
+    @Autowired
+    private GatewayParser requestParser;
+
+    @Autowired
+    private EndpointRegistry endpointRegistry;
+
+    @Autowired
+    private ClusterPeers clusterPeers;
+
+    /**
+     * Answers the lookups forwarded by the other gateway nodes in peer mode, for the IDs this node owns on the hash ring.
+     *
+     * The IDs go through the RequestQueueProcessor like those of any gateway request (cache, coalescing, batching),
+     * and are answered with the batched contract of the internal services: {"id": data}, [] for an unknown ID,
+     * the IDs which timed out or failed being left out. The lookup waits for at most 90% of CLUSTER_PEER_TIMEOUT,
+     * so the answer reaches the forwarding node before it gives up. The IDs are queued in the interactive lanes,
+     * the forwarding node having already waited for its own batch.
+     *
+     * Only available in peer mode, and only to the requests whose X-Gateway-Forwarded-By header names another node
+     * of CLUSTER_PEERS (403 otherwise). The header only keeps out the clients which do not know the cluster: the
+     * /gateway/peer route should not be reachable from outside the network of the nodes.
+     *
+     * A lookup of IDs this node does not own on its ring (the nodes disagreeing on CLUSTER_PEERS, e.g. during a rollout)
+     * is refused with 421 instead of being forwarded again, so two nodes never wait on each other for the same ID:
+     * the forwarding node fetches them itself.
+     * When the endpoint queue is overloaded, the lookup is shed with 429 or 503 and a Retry-After header.
+     */
+    @GetMapping("/{endpoint}")
+    public Mono<ResponseEntity<Map<String, List<?>>>> getPeerData(
+            @PathVariable String endpoint,
+            @RequestParam String ids,
+            @RequestHeader(ClusterPeers.FORWARDED_HEADER) String forwardedBy) {
+
+        EndpointDefinition definition = endpointRegistry.get(endpoint);
+        if (!clusterPeers.isEnabled() || definition == null) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        if (!clusterPeers.isPeer(forwardedBy)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        }
+
+        List<String> requestedIds = new ArrayList<>();
+        for (String id : StringUtils.commaDelimitedListToStringArray(ids)) {
+            requestedIds.add(id.trim());
+        }
+        List<String> parsedIds = requestParser.parseIds(definition.idType(), requestedIds);
+
+        // Only the owned IDs are fetched here, the others would be forwarded again, possibly back to the forwarding node (421 Misdirected Request)
+        if (!parsedIds.stream().allMatch(id -> clusterPeers.isOwned(endpoint, id))) {
+            return Mono.just(ResponseEntity.status(421).build());
+        }
+
+        return requestHandler.queueAndProcessRequest(endpoint, parsedIds, clusterPeers.getPeerTimeout().multipliedBy(9).dividedBy(10), RequestClass.INTERACTIVE)
+                .map(response -> {
+                    Map<String, List<?>> data = new HashMap<>();
+                    response.status().forEach((id, status) -> {
+                        if (status == ResponseStatus.OK || status == ResponseStatus.NOT_FOUND) {
+                            data.put(id, response.data().get(id));
+                        }
+                    });
+                    return ResponseEntity.ok(data);
+                })
+                .onErrorResume(QueueRejectedException.class, e -> Mono.just(ResponseEntity.status(e.getStatus())
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                        .<Map<String, List<?>>>build()));
+    }
+}
@@ -1,15 +1,21 @@
 package com.ecommerce.service.master;
 
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.service.master.batch.BatchPolicy;
+import com.ecommerce.service.master.batch.BatchPolicyEntity;
 import com.ecommerce.service.master.batch.BatchRequestHandler;
+import com.ecommerce.service.master.batch.EndpointBatcher;
+import com.ecommerce.service.master.metrics.PipelineMetrics;
+import com.ecommerce.service.master.queue.RequestClass;
 import com.ecommerce.service.master.queue.RequestQueueEntity;
 import jakarta.annotation.PostConstruct;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.util.List;
@@ -19,27 +25,40 @@ public class GatewayService {
 
     private final Logger log = LogManager.getLogger(this.getClass());
 
-    @Value("${QUEUE_API_WAIT_MAX_TIME}")
-    private long queueApiWaitMaxTime; // e.g., 5000 ms
+    @Autowired
+    private RequestQueueEntity queueFactory;
 
-    @Value("${QUEUE_API_PARAM_MAX_CAP}")
-    private int queueApiParamMaxCap; // e.g., 5
+    @Autowired
+    private BatchRequestHandler batchProcessor;
 
     @Autowired
-    private WebClient webClient;
+    private BatchPolicyEntity batchPolicies;
 
     @Autowired
-    private RequestQueueEntity queueFactory;
+    private PipelineMetrics pipelineMetrics;
 
     @Autowired
-    private BatchRequestHandler batchProcessor;
+    private EndpointRegistry endpointRegistry;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
 
     /**
      * This method initializes the request queues for each internal endpoint at application startup.
      * The queues continuously listen for incoming requests, ensuring batches are processed asynchronously
      * up to a maximum size or timeout.
      *
-     * When a batch is ready, batch processing is triggered.
+     * Each endpoint queue is made of QUEUE_API_LANES lanes (its IDs partitioned by hash), each lane cutting its own
+     * batches with its own EndpointBatcher, so that enqueuing and batching an endpoint scale with the cores.
+     * Each lane has one sink per RequestClass, both feeding the same EndpointBatcher: the interactive IDs are flushed
+     * within QUEUE_API_INTERACTIVE_MAX_WAIT, and the batches are shared between the classes with QUEUE_API_INTERACTIVE_WEIGHT.
+     *
+     * The maximum size and timeout come from the BatchPolicy of each lane (QUEUE_API_BATCH_MODE):
+     * - fixed: always QUEUE_API_PARAM_MAX_CAP items or QUEUE_API_WAIT_MAX_TIME,
+     * - adaptive: tuned from the observed arrival rate and upstream latency to meet QUEUE_API_P99_BUDGET.
+     *
+     * When a batch is ready, batch processing is triggered on the parallel scheduler, outside the lock of the lane
+     * the batch may have been cut under (see RequestQueueEntity.enqueue).
      *
      * It uses the RequestQueueFactory to manage shared queues and the BatchProcessor to handle the logic
      * for processing each batch of requests.
@@ -48,26 +67,33 @@ public class GatewayService {
      */
     @PostConstruct
     private void initQueues() {
-        // Should be dynamically retrieved from either a text file or by reflection reading in the controller internal package
-        List<String> endpoints = List.of("customer", "product", "inventory", "order", "shipment");
+        // For each internal endpoint of the registry (GATEWAY_API_ENDPOINTS), it subscribes to the stream of each lane in which the producer emits the value
+        for (String endpoint : endpointRegistry.getNames()) {
+            List<BatchPolicy> lanePolicies = batchPolicies.getOrCreatePolicies(endpoint);
+            Duration interactiveMaxWait = Duration.ofMillis(endpointProperties.get("QUEUE_API_INTERACTIVE_MAX_WAIT", endpoint, Long.class));
+            int interactiveWeight = endpointProperties.get("QUEUE_API_INTERACTIVE_WEIGHT", endpoint, Integer.class);
 
-        // For each internal endpoint, it subscribes to the stream in which the producer emits the value
-        for (String endpoint : endpoints) {
-            Sinks.Many<String> queue = queueFactory.getOrCreateQueue(endpoint);
+            for (int lane = 0; lane < lanePolicies.size(); lane++) {
+                // Defines a set of rules on how to process each batch
+                EndpointBatcher batcher = new EndpointBatcher(endpoint, lanePolicies.get(lane), Schedulers.parallel(), pipelineMetrics, // Collects up to the policy max size or waits the policy max time
+                        interactiveMaxWait, interactiveWeight,                                                                  // Shorter wait and weighted share of the batches for the interactive IDs
+                        (batch, flushReason) -> {                                                                               // Every-time an internal endpoint batch is emitted, do the logic
 
-            // Defines a set of rules on how to process each batch
-            queue
-                    .asFlux()                                                                                           // Transforms the push-style sink into a Flux stream
-                    .bufferTimeout(queueApiParamMaxCap, Duration.ofMillis(queueApiWaitMaxTime))                         // Collects up to 5 items or waits 5s
-                    .doOnNext(batch -> {                                                                                // Every-time an internal endpoint batch is emitted, do the logic
+                                // Once per batch on the batching thread, the queue wait metrics carry the same information
+                                if (log.isDebugEnabled()) {
+                                    log.debug("Endpoint [{}]: Emitting a batch of {} requests ({}).", endpoint, Unbox.box(batch.size()), flushReason);
+                                }
 
-                            // TODO can it be log.debug ?
-                            log.info("Endpoint [{}]: Emitting a batch of {} requests ({}).",
-                                    endpoint, batch.size(), batch.size() == queueApiParamMaxCap ? "queue full" : "timeout reached");
+                                // A full batch is cut on the enqueuing thread, which holds its lane: the fetch is started on another thread to release it
+                                Schedulers.parallel().schedule(() -> batchProcessor.onBatchReady(endpoint, batch));
+                            });
 
-                            batchProcessor.onBatchReady(endpoint, batch);
-                        })
-                    .subscribe();                                                                                       // Subscribes to the flux, causing the batch processing to happen asynchronously and continuously
+                for (RequestClass requestClass : RequestClass.values()) {
+                    queueFactory.getOrCreateLanes(endpoint, requestClass).get(lane)
+                            .asFlux()                                                                                           // Transforms the push-style sink into a Flux stream
+                            .subscribe(id -> batcher.offer(id, requestClass));                                                  // Subscribes to the flux, causing the batch processing to happen asynchronously and continuously
+                }
+            }
         }
     }
 }
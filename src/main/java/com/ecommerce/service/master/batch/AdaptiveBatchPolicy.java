@@ -0,0 +1,73 @@
+package com.ecommerce.service.master.batch;
+
+import java.time.Duration;
+
+/**
+ * The adaptive batching, tuned per endpoint from the observed traffic:
+ *
+ * - The max wait is the p99 budget left once the upstream p99 latency is spent, bounded by [minWait, maxWaitCap].
+ *   The upstream p99 is estimated as mean + 3 * mean deviation of the observed latencies (both exponentially weighted).
+ * - The max size is the number of IDs expected to arrive within that wait, bounded by [1, maxSizeCap].
+ * - When at most one ID is expected within that wait, batching gains nothing: the max size is 1 and the ID is emitted at once.
+ *
+ * At low traffic a lone request is therefore not held for the full wait, while at high traffic batches grow
+ * beyond the fixed cap as long as the latency budget allows it.
+ */
+public class AdaptiveBatchPolicy implements BatchPolicy {
+
+    private static final double ALPHA = 0.1; // Weight of the newest observation in the moving averages
+
+    private final int maxSizeCap;
+    private final long minWaitNanos;
+    private final long maxWaitCapNanos;
+    private final long p99BudgetNanos;
+
+    private long lastArrival = -1;
+    private double interArrivalNanos = Double.POSITIVE_INFINITY;
+    private double latencyNanos = 0;
+    private double latencyDeviationNanos = 0;
+
+    public AdaptiveBatchPolicy(int maxSizeCap, Duration minWait, Duration maxWaitCap, Duration p99Budget) {
+        this.maxSizeCap = maxSizeCap;
+        this.minWaitNanos = minWait.toNanos();
+        this.maxWaitCapNanos = maxWaitCap.toNanos();
+        this.p99BudgetNanos = p99Budget.toNanos();
+    }
+
+    @Override
+    public synchronized void recordArrival(long nanoTime) {
+        if (lastArrival >= 0) {
+            long interval = nanoTime - lastArrival;
+            interArrivalNanos = Double.isInfinite(interArrivalNanos) ? interval : interArrivalNanos + ALPHA * (interval - interArrivalNanos);
+        }
+        lastArrival = nanoTime;
+    }
+
+    @Override
+    public synchronized void recordUpstreamLatency(Duration latency) {
+        long sample = latency.toNanos();
+        if (latencyNanos == 0) {
+            latencyNanos = sample;
+            latencyDeviationNanos = sample / 2.0;
+        } else {
+            latencyDeviationNanos += ALPHA * (Math.abs(sample - latencyNanos) - latencyDeviationNanos);
+            latencyNanos += ALPHA * (sample - latencyNanos);
+        }
+    }
+
+    @Override
+    public synchronized int maxSize() {
+        double expectedArrivals = waitNanos() / interArrivalNanos;
+        return (int) Math.max(1, Math.min(maxSizeCap, Math.ceil(expectedArrivals)));
+    }
+
+    @Override
+    public synchronized Duration maxWait() {
+        return Duration.ofNanos(waitNanos());
+    }
+
+    private long waitNanos() {
+        long upstreamP99 = (long) (latencyNanos + 3 * latencyDeviationNanos);
+        return Math.max(minWaitNanos, Math.min(maxWaitCapNanos, p99BudgetNanos - upstreamP99));
+    }
+}
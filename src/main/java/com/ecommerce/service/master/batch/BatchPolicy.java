@@ -0,0 +1,20 @@
+package com.ecommerce.service.master.batch;
+
+import java.time.Duration;
+
+/**
+ * Decides how an endpoint queue cuts its batches: a batch is emitted as soon as it reaches maxSize(),
+ * or maxWait() after its first ID has been queued.
+ *
+ * Implementations are fed with the observed arrivals and upstream latencies, and may use them to tune both values.
+ */
+public interface BatchPolicy {
+
+    void recordArrival(long nanoTime);
+
+    void recordUpstreamLatency(Duration latency);
+
+    int maxSize();
+
+    Duration maxWait();
+}
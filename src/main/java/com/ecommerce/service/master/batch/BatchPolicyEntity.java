@@ -0,0 +1,78 @@
+package com.ecommerce.service.master.batch;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.service.master.queue.RequestQueueEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class BatchPolicyEntity {
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private RequestQueueEntity requestQueue;
+
+    /**
+     * The Concurrent Hash Map which contains the batch policies per endpoint, one per lane of its queue,
+     * so that each lane is tuned from its own share of the arrivals.
+     * It is shared between the GatewayService, which cuts the batches, and the BatchRequestHandler,
+     * which reports the upstream latency of each batch.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, List<BatchPolicy>> batchPolicies = new ConcurrentHashMap<>();
+
+    public List<BatchPolicy> getOrCreatePolicies(String endpoint) {
+        return batchPolicies.computeIfAbsent(endpoint, key -> {
+            int laneCount = requestQueue.getLaneCount(key);
+            List<BatchPolicy> policies = new ArrayList<>(laneCount);
+            for (int lane = 0; lane < laneCount; lane++) {
+                policies.add(createPolicy(key));
+            }
+            return Collections.unmodifiableList(policies);
+        });
+    }
+
+    /**
+     * Feeds the upstream latency of a batch to every lane of the endpoint, as they all call the same internal service.
+     */
+    public void recordUpstreamLatency(String endpoint, Duration latency) {
+        getOrCreatePolicies(endpoint).forEach(policy -> policy.recordUpstreamLatency(latency));
+    }
+
+    /**
+     * Builds the policy of one lane, failing the startup on a batch size below 1 or a non-positive wait,
+     * with which the batcher could never cut a batch.
+     */
+    private BatchPolicy createPolicy(String endpoint) {
+        Duration maxWait = Duration.ofMillis(positive("QUEUE_API_WAIT_MAX_TIME", endpoint, Long.class));
+
+        String mode = endpointProperties.get("QUEUE_API_BATCH_MODE", endpoint, String.class);
+        return switch (mode.toLowerCase()) {
+            case "fixed" -> new FixedBatchPolicy(positive("QUEUE_API_PARAM_MAX_CAP", endpoint, Integer.class), maxWait);
+            case "adaptive" -> new AdaptiveBatchPolicy(
+                    positive("QUEUE_API_ADAPTIVE_MAX_CAP", endpoint, Integer.class),
+                    Duration.ofMillis(positive("QUEUE_API_ADAPTIVE_MIN_WAIT", endpoint, Long.class)),
+                    maxWait,
+                    Duration.ofMillis(endpointProperties.get("QUEUE_API_P99_BUDGET", endpoint, Long.class)));
+            default -> throw new IllegalStateException("Unknown QUEUE_API_BATCH_MODE for " + endpoint + ": " + mode);
+        };
+    }
+
+    private <T extends Number> T positive(String key, String endpoint, Class<T> type) {
+        T value = endpointProperties.get(key, endpoint, type);
+        if (value.longValue() < 1) {
+            throw new IllegalStateException(key + " for " + endpoint + " must be at least 1: " + value);
+        }
+        return value;
+    }
+}
@@ -1,65 +1,369 @@
 package com.ecommerce.service.master.batch;
 
-import com.ecommerce.service.master.cache.ResponseCacheEntity;
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.config.UpstreamClientRegistry;
+import com.ecommerce.service.master.cache.ResponseDataCacheEntity;
+import com.ecommerce.service.master.cluster.ClusterPeers;
+import com.ecommerce.service.master.hedge.UpstreamHedging;
+import com.ecommerce.service.master.isolation.EndpointIsolation;
+import com.ecommerce.service.master.metrics.PipelineMetrics;
+import com.ecommerce.service.master.pending.PendingRequestRegistry;
+import com.ecommerce.service.master.queue.RequestQueueEntity;
+import com.ecommerce.util.RawJsonParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
-import java.util.Collections;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class BatchRequestHandler implements BatchEventListener {
 
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    @Value("${BATCH_API_PER_ID_ENDPOINTS:}")
+    private Set<String> perIdEndpoints; // e.g., shipment,order
+
+    @Value("${BATCH_API_REPROBE_INTERVAL}")
+    private long batchReprobeInterval;
+
+    @Autowired
+    private UpstreamClientRegistry upstreamClients;
+
+    @Autowired
+    private PendingRequestRegistry pendingRequests;
+
+    @Autowired
+    private ResponseDataCacheEntity responseDataCache;
+
+    @Autowired
+    private BatchPolicyEntity batchPolicies;
+
     @Autowired
-    private WebClient webClient;
+    private RequestQueueEntity requestQueue;
 
     @Autowired
-    private ResponseCacheEntity responseCacheManager;
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private UpstreamHedging upstreamHedging;
+
+    @Autowired
+    private EndpointIsolation endpointIsolation;
+
+    @Autowired
+    private RawJsonParser rawJsonParser;
+
+    @Autowired
+    private ClusterPeers clusterPeers;
+
+    /**
+     * The endpoints which have been detected at runtime as not supporting the batched contract, with until when
+     * (System.nanoTime) they stay in per-ID mode. The batched call is probed again after BATCH_API_REPROBE_INTERVAL ms,
+     * so an upstream which was only briefly answering 404 / 405 (e.g. during a deployment) gets its batching back.
+     */
+    private final Map<String, Long> perIdUntil = new ConcurrentHashMap<>();
 
     @Override
     public void onBatchReady(String endpoint, List<String> batch) {
-        fetchBatchData(endpoint, batch).subscribe();
+        long startTime = System.nanoTime();
+        fetchBatchData(endpoint, batch)
+                .doOnComplete(() -> batchPolicies.recordUpstreamLatency(endpoint,                                      // Feeds the upstream latency back to the batching of the endpoint
+                        Duration.ofNanos(System.nanoTime() - startTime)))
+                .doFinally(signal -> requestQueue.getLoad(endpoint).release(batch.size()))                             // The batch IDs leave the queue, answered or failed
+                .subscribe(null, e -> {
+                    log.warn("Endpoint [{}]: Failed to fetch a batch of {} requests ({}).", endpoint, batch.size(), e.toString());
+
+                    pendingRequests.fail(endpoint, batch, e);                                                           // Every waiter of the batch gets the error, none is left hanging
+                });
     }
 
     /**
-     * This method makes a single HTTP GET request for each ID, processes the response,
-     * and emits the data back into a Sinks.One cache for further consumption.
+     * In peer mode, looks the IDs owned by a peer up on it straight from the request which issued them (see
+     * RequestQueueProcessor), so they are only batched by their owner. Their queue room is released once they are
+     * answered, and their waiters failed on error, the same as for a batch.
+     *
+     * @param endpoint The internal endpoint the IDs belong to.
+     * @param peer The URL of the owner of the IDs.
+     * @param ids The distinct IDs owned by the peer.
+     */
+    public void onPeerLookup(String endpoint, String peer, List<String> ids) {
+        fetchPeerData(endpoint, peer, ids)
+                .doFinally(signal -> requestQueue.getLoad(endpoint).release(ids.size()))                               // The IDs leave the queue, answered or failed
+                .subscribe(null, e -> {
+                    log.warn("Endpoint [{}]: Failed to look {} requests up on the peer [{}] ({}).", endpoint, ids.size(), peer, e.toString());
+
+                    pendingRequests.fail(endpoint, ids, e);
+                });
+    }
+
+    /**
+     * This method sends the whole batch to the internal endpoint in a single HTTP GET request (?ids=a,b,c),
+     * then fans the data of each ID back out to the requests waiting in the PendingRequestRegistry.
+     *
+     * Endpoints listed in BATCH_API_PER_ID_ENDPOINTS, or detected as not supporting the batched contract
+     * (the upstream answers 404 / 405 to the batched call), fall back to one HTTP GET request per ID, the batched call
+     * being probed again every BATCH_API_REPROBE_INTERVAL ms.
+     * A 400 to the batched call only falls this batch back to per-ID requests, so a single ID rejected by the upstream
+     * fails alone instead of failing its whole batch, and the endpoint keeps batching.
+     *
+     * Each upstream call is bounded by UPSTREAM_API_TIMEOUT: on error or timeout, the returned Flux errors
+     * and the waiters of the batch are failed by onBatchReady.
+     * With UPSTREAM_API_RAW_PAYLOADS, the data of each ID is kept as the raw JSON bytes of the upstream (see RawJson),
+     * neither decoded here nor encoded again in the gateway response.
+     * Upstream calls of endpoints with UPSTREAM_API_HEDGE_ENABLED are hedged (see UpstreamHedging), each attempt
+     * going through the bulkhead and circuit breaker of the endpoint (see EndpointIsolation).
+     * In peer mode (CLUSTER_PEERS), the batches only hold the IDs fetched by this node, those owned by another gateway node
+     * being looked up on it before reaching the queue (see onPeerLookup).
+     *
      * It completes each request asynchronously and returns Flux<Void>, meaning it performs asynchronous operations
      * with no expected result, just a signal that the operation has finished.
      *
-     * @param endpoint
-     * @param batch
-     * @return
+     * @param endpoint The internal endpoint the batch belongs to.
+     * @param batch The IDs collected by the queue, possibly containing duplicates.
+     * @return A Flux completing once every ID of the batch has been emitted to its waiters.
      */
     private Flux<Void> fetchBatchData(String endpoint, List<String> batch) {
-        return Flux.fromIterable(batch)
-                .flatMap(id -> webClient.get()
-                        .uri(uriBuilder -> uriBuilder.path(endpoint + "/" + id).build())
-                        .retrieve()
-                        .toEntity(new ParameterizedTypeReference<>() {})
-                        .flatMap(responseEntity -> {
-                            Object body = responseEntity.getBody();
-                            List<Object> data = (body instanceof List<?>) ? (List<Object>) body :
-                                    (body != null ? List.of(body) : Collections.emptyList());
+        // The PendingRequestRegistry enqueues an ID only once while it is pending, distinct is a safety net
+        List<String> ids = batch.stream().distinct().toList();
+        return fetchUpstreamData(endpoint, ids);
+    }
+
+    /**
+     * Fetches the IDs of a batch from the internal service, in a single batched call or per ID.
+     *
+     * @param endpoint The internal endpoint the batch belongs to.
+     * @param ids The distinct IDs to fetch.
+     * @return A Flux completing once every ID has been emitted to its waiters.
+     */
+    private Flux<Void> fetchUpstreamData(String endpoint, List<String> ids) {
+        if (perIdEndpoints.contains(endpoint) || isPerIdMode(endpoint)) {
+            return fetchPerIdData(endpoint, ids);
+        }
+
+        WebClient.ResponseSpec batchedResponse = upstreamClients.getWebClient(endpoint).get()
+                .uri(uriBuilder -> uriBuilder.path(endpoint).queryParam("ids", String.join(",", ids)).build())
+                .retrieve();
+        Mono<Map<String, ?>> batchedCall = retrieveBatched(batchedResponse, isRawPayloads(endpoint))
+                .timeout(getUpstreamTimeout(endpoint));
+
+        return upstreamHedging.hedge(endpoint, endpointIsolation.guard(endpoint, timeUpstream(endpoint, "batched", batchedCall)))
+                .defaultIfEmpty(Collections.emptyMap())
+                .flatMapMany(body -> {
+                    // IDs missing from the batched response are unknown to the upstream, the same as an empty body
+                    long fanOutStart = System.nanoTime();
+                    ids.forEach(id -> emitToWaiters(endpoint, id, body.get(id)));
+                    pipelineMetrics.recordFanOut(endpoint, System.nanoTime() - fanOutStart);
+                    return Flux.<Void>empty();
+                })
+                .onErrorResume(this::isBatchUnsupported, e -> {
+                    log.warn("Endpoint [{}]: batched requests are not supported ({}), falling back to per-ID requests for {} ms.",
+                            endpoint, e.getMessage(), batchReprobeInterval);
+                    perIdUntil.put(endpoint, System.nanoTime() + Duration.ofMillis(batchReprobeInterval).toNanos());
+                    return fetchPerIdData(endpoint, ids);
+                })
+                .onErrorResume(this::isBatchRejected, e -> {
+                    log.debug("Endpoint [{}]: batch of {} IDs rejected ({}), retrying it with per-ID requests.",
+                            endpoint, ids.size(), e.getMessage());
+                    return fetchPerIdData(endpoint, ids);
+                });
+    }
 
-                            // Gets (and removes) the particular Sinks.One<List<?>> based on the id as key from the cache
-                            List<Sinks.One<List<?>>> sinks = responseCacheManager.getCache().get(endpoint).remove(id);
+    /**
+     * Looks the IDs owned by a peer up on its /gateway/peer/{endpoint} endpoint, which goes through the cache,
+     * coalescing and batching of the owner, so each ID is fetched about once from the internal service across the nodes.
+     *
+     * The peer answers the batched contract ({"id": data}, [] for an unknown ID). The IDs it could not answer
+     * (timeout or error on its side) are failed. When the peer is unreachable or failing, it is skipped for
+     * CLUSTER_PEER_RETRY_INTERVAL and its IDs are fetched locally, unless it sheds the lookup (429 / 503), in which case
+     * they are failed rather than sent to the internal service the owner is protecting.
+     * A peer which does not own the IDs on its own ring (the nodes disagreeing on CLUSTER_PEERS, e.g. during a rollout)
+     * refuses the lookup with 421 rather than forwarding it again, and is skipped the same way.
+     *
+     * @param endpoint The internal endpoint the batch belongs to.
+     * @param peer The URL of the owner of the IDs.
+     * @param ids The distinct IDs owned by the peer.
+     * @return A Flux completing once every ID has been emitted to its waiters.
+     */
+    private Flux<Void> fetchPeerData(String endpoint, String peer, List<String> ids) {
+        WebClient.ResponseSpec peerResponse = clusterPeers.getWebClient(peer).get()
+                .uri(uriBuilder -> uriBuilder.path("/gateway/peer/" + endpoint).queryParam("ids", String.join(",", ids)).build())
+                .header(ClusterPeers.FORWARDED_HEADER, clusterPeers.getSelf())
+                .retrieve();
 
-                            // If multiple requests contain the same id, it emits the data to all sinks
-                            if (sinks != null) {
-                                sinks.forEach(sink -> sink.tryEmitValue(data)); // Emit response to all waiting requests
-                            }
+        return retrieveBatched(peerResponse, isRawPayloads(endpoint))
+                .timeout(clusterPeers.getPeerTimeout())
+                .flatMapMany(body -> {
+                    long fanOutStart = System.nanoTime();
+                    List<String> unanswered = new ArrayList<>();
+                    for (String id : ids) {
+                        if (body.containsKey(id)) {
+                            emitToWaiters(endpoint, id, body.get(id));
+                        } else {
+                            unanswered.add(id);
+                        }
+                    }
+                    pipelineMetrics.recordFanOut(endpoint, System.nanoTime() - fanOutStart);
+                    if (!unanswered.isEmpty()) {
+                        pendingRequests.fail(endpoint, unanswered, new IllegalStateException("Not answered by the peer " + peer));
+                    }
+                    return Flux.<Void>empty();
+                })
+                .onErrorResume(this::isShedByPeer, e -> {
+                    pendingRequests.fail(endpoint, ids, e);
+                    return Flux.empty();
+                })
+                .onErrorResume(e -> {
+                    log.warn("Endpoint [{}]: peer [{}] is unavailable ({}), fetching {} IDs locally.", endpoint, peer, e.toString(), ids.size());
+                    clusterPeers.markUnavailable(peer, ids.size(), endpoint);
+                    return fetchUpstreamData(endpoint, ids);
+                });
+    }
 
+    /**
+     * This method makes a single HTTP GET request for each ID, processes the response,
+     * and emits the data back to the requests waiting in the PendingRequestRegistry.
+     *
+     * A failing ID only fails its own waiters, the other IDs of the batch are still fetched.
+     * At most BULKHEAD_API_MAX_CONCURRENT_CALLS IDs of the batch are requested at the same time, and as the batches of
+     * every lane share the bulkhead of the endpoint, a call finding it full waits up to BULKHEAD_API_PERMIT_WAIT
+     * for a permit before failing its ID as UNAVAILABLE.
+     *
+     * @param endpoint The internal endpoint the batch belongs to.
+     * @param batch The IDs to request one by one.
+     * @return A Flux completing once every ID of the batch has been emitted to its waiters.
+     */
+    private Flux<Void> fetchPerIdData(String endpoint, List<String> batch) {
+        Duration upstreamTimeout = getUpstreamTimeout(endpoint);
+        WebClient webClient = upstreamClients.getWebClient(endpoint);
+        boolean rawPayloads = isRawPayloads(endpoint);
+        Duration permitWait = Duration.ofMillis(endpointProperties.get("BULKHEAD_API_PERMIT_WAIT", endpoint, Long.class));
+        return Flux.fromIterable(batch)
+                .flatMap(id -> upstreamHedging.hedge(endpoint, endpointIsolation.guard(endpoint, timeUpstream(endpoint, "per-id",
+                        retrievePerId(webClient.get().uri(uriBuilder -> uriBuilder.path(endpoint + "/" + id).build()).retrieve(), rawPayloads)
+                        .timeout(upstreamTimeout)), permitWait))
+                        .flatMap(body -> {
+                            long fanOutStart = System.nanoTime();
+                            emitToWaiters(endpoint, id, body);
+                            pipelineMetrics.recordFanOut(endpoint, System.nanoTime() - fanOutStart);
 
                             // Each HTTP GET id process returns an empty Mono to the Flux, a formality since the Flux is not used and is empty
-                            return Mono.empty();
+                            return Mono.<Void>empty();
                         })
+                        .onErrorResume(e -> {
+                            pendingRequests.fail(endpoint, List.of(id), e);
+                            return Mono.empty();
+                        }),
+                        endpointIsolation.getMaxConcurrentCalls(endpoint)
                 );
     }
+
+    /**
+     * The body of a batched call ({"id": data}): decoded into Lists and Maps, or split into the raw JSON bytes
+     * of each ID with UPSTREAM_API_RAW_PAYLOADS.
+     */
+    private Mono<Map<String, ?>> retrieveBatched(WebClient.ResponseSpec response, boolean rawPayloads) {
+        if (rawPayloads) {
+            return response.bodyToMono(byte[].class).map(rawJsonParser::splitObject);                                  // Each ID keeps its raw JSON bytes, nothing is decoded
+        }
+        return response.bodyToMono(new ParameterizedTypeReference<Map<String, ?>>() {});
+    }
+
+    /**
+     * The body of a per-ID upstream call: decoded into Lists and Maps, or kept as its raw JSON bytes with UPSTREAM_API_RAW_PAYLOADS.
+     * An empty body gives an empty list, the same as an ID unknown to the upstream.
+     */
+    private Mono<Object> retrievePerId(WebClient.ResponseSpec response, boolean rawPayloads) {
+        if (rawPayloads) {
+            return response.toEntity(byte[].class)
+                    .map(responseEntity -> rawJsonParser.parseValue(responseEntity.getBody()));
+        }
+        return response.toEntity(Object.class)
+                .map(responseEntity -> responseEntity.getBody() != null ? responseEntity.getBody() : Collections.emptyList());
+    }
+
+    /**
+     * Normalizes the upstream body of one ID, stores it in the response data cache
+     * and emits it to every request waiting on that ID.
+     *
+     * @param endpoint The internal endpoint the ID belongs to.
+     * @param id The ID whose data has been received.
+     * @param body The raw body for the ID, null when the upstream does not know it.
+     */
+    @SuppressWarnings("unchecked")
+    private void emitToWaiters(String endpoint, String id, Object body) {
+        List<Object> data = (body instanceof List<?>) ? (List<Object>) body :
+                (body != null ? List.of(body) : Collections.emptyList());
+
+        // Caches the data (even empty, as a negative entry) before emitting, so the following lookups for the ID do not enter the queue again
+        responseDataCache.put(endpoint, id, data);
+
+        // If multiple requests contain the same id, the registry emits the data to all of them
+        pendingRequests.complete(endpoint, id, data);
+    }
+
+    /**
+     * Records the duration of an upstream call into the "gateway.stage.upstream" timer, from its subscription
+     * to its outcome: success, timeout or error.
+     */
+    private <T> Mono<T> timeUpstream(String endpoint, String mode, Mono<T> call) {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return call
+                    .doOnSuccess(response -> pipelineMetrics.recordUpstream(endpoint, mode, "success", System.nanoTime() - startTime))
+                    .doOnError(e -> pipelineMetrics.recordUpstream(endpoint, mode,
+                            e instanceof TimeoutException ? "timeout" : "error", System.nanoTime() - startTime));
+        });
+    }
+
+    private boolean isRawPayloads(String endpoint) {
+        return endpointProperties.get("UPSTREAM_API_RAW_PAYLOADS", endpoint, Boolean.class);
+    }
+
+    private Duration getUpstreamTimeout(String endpoint) {
+        return Duration.ofMillis(endpointProperties.get("UPSTREAM_API_TIMEOUT", endpoint, Long.class));
+    }
+
+    private boolean isShedByPeer(Throwable e) {
+        return e instanceof WebClientResponseException responseException
+                && (responseException.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                || responseException.getStatusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE));
+    }
+
+    private boolean isPerIdMode(String endpoint) {
+        Long until = perIdUntil.get(endpoint);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until >= 0) {
+            perIdUntil.remove(endpoint, until);                                                                        // Re-probes the batched call
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isBatchUnsupported(Throwable e) {
+        return e instanceof WebClientResponseException responseException
+                && (responseException.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND)
+                || responseException.getStatusCode().isSameCodeAs(HttpStatus.METHOD_NOT_ALLOWED));
+    }
+
+    private boolean isBatchRejected(Throwable e) {
+        return e instanceof WebClientResponseException responseException
+                && responseException.getStatusCode().isSameCodeAs(HttpStatus.BAD_REQUEST);
+    }
 }
@@ -0,0 +1,219 @@
+package com.ecommerce.service.master.batch;
+
+import com.ecommerce.service.master.metrics.PipelineMetrics;
+import com.ecommerce.service.master.queue.RequestClass;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Cuts the IDs of one endpoint queue into batches, following its BatchPolicy.
+ *
+ * It behaves like Flux.bufferTimeout, except that the max size and the max wait are read from the policy
+ * for every batch, so they can change while the queue is running:
+ * - the batch is emitted as soon as it reaches the max size (queue full),
+ * - otherwise the max wait is counted from the first ID of the batch (timeout reached).
+ *
+ * The IDs are buffered per RequestClass, the batches being shared by both classes:
+ * - the interactive IDs wait at most QUEUE_API_INTERACTIVE_MAX_WAIT (or the policy max wait if shorter), the bulk IDs
+ *   the policy max wait, and the buffered bulk IDs ride along when the interactive ones are flushed,
+ * - when more IDs are buffered than a batch holds, the batch is formed weighted-fairly: the interactive IDs get
+ *   QUEUE_API_INTERACTIVE_WEIGHT slots for each bulk slot, the slots one class does not use going to the other,
+ *   and the IDs left over keep their arrival time for the next batch.
+ *
+ * The arrival time of each ID is kept along the batch, so that its queue wait is recorded (per class) when the batch is cut.
+ */
+public class EndpointBatcher {
+
+    public enum FlushReason {
+        QUEUE_FULL("queue full"),
+        TIMEOUT("timeout reached");
+
+        private final String description;
+
+        FlushReason(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private final String endpoint;
+    private final BatchPolicy policy;
+    private final Scheduler timer;
+    private final PipelineMetrics metrics;
+    private final Duration interactiveMaxWait;
+    private final int interactiveWeight;
+    private final BiConsumer<List<String>, FlushReason> onBatch;
+
+    private final Map<RequestClass, ClassBuffer> buffers = new EnumMap<>(RequestClass.class);
+
+    public EndpointBatcher(String endpoint, BatchPolicy policy, Scheduler timer, PipelineMetrics metrics,
+                           Duration interactiveMaxWait, int interactiveWeight,
+                           BiConsumer<List<String>, FlushReason> onBatch) {
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.timer = timer;
+        this.metrics = metrics;
+        this.interactiveMaxWait = interactiveMaxWait;
+        this.interactiveWeight = Math.max(1, interactiveWeight);
+        this.onBatch = onBatch;
+        for (RequestClass requestClass : RequestClass.values()) {
+            buffers.put(requestClass, new ClassBuffer());
+        }
+    }
+
+    public void offer(String id, RequestClass requestClass) {
+        List<Batch> batches = null;
+        synchronized (this) {
+            long arrival = System.nanoTime();
+            policy.recordArrival(arrival);
+            ClassBuffer buffer = buffers.get(requestClass);
+            buffer.add(id, arrival);
+
+            if (bufferedCount() >= policy.maxSize()) {
+                batches = new ArrayList<>();
+                while (bufferedCount() > 0 && bufferedCount() >= policy.maxSize()) {
+                    batches.add(cut(FlushReason.QUEUE_FULL));
+                }
+            }
+            // The first ID of the class starts its max wait, unless it already left with a batch
+            if (!buffer.ids.isEmpty() && buffer.pendingTimeout == null) {
+                scheduleTimeout(requestClass, buffer, buffer.arrivals[0]);
+            }
+        }
+
+        // The batches are handed over outside the lock, so the queue is not blocked by their processing
+        if (batches != null) {
+            batches.forEach(this::emit);
+        }
+    }
+
+    private void onTimeout(RequestClass requestClass, long sequence) {
+        Batch batch = null;
+        synchronized (this) {
+            // Cuts a single batch: if the max size shrank and IDs of the class are left over, take() has already
+            // scheduled the timeout of their oldest one, which has expired too and so fires at once for the next batch
+            ClassBuffer buffer = buffers.get(requestClass);
+            if (sequence == buffer.sequence && !buffer.ids.isEmpty()) {
+                batch = cut(FlushReason.TIMEOUT);
+            }
+        }
+        if (batch != null) {
+            emit(batch);
+        }
+    }
+
+    private void emit(Batch batch) {
+        long cutTime = System.nanoTime();
+        for (RequestClass requestClass : RequestClass.values()) {
+            int count = batch.counts[requestClass.ordinal()];
+            if (count > 0) {
+                metrics.recordQueueWait(endpoint, requestClass, batch.flushReason, batch.arrivals[requestClass.ordinal()], count, cutTime);
+            }
+        }
+        onBatch.accept(batch.ids, batch.flushReason);
+    }
+
+    /**
+     * Cuts a batch of up to the policy max size out of the buffers, weighted-fairly between the classes.
+     */
+    private Batch cut(FlushReason flushReason) {
+        ClassBuffer interactive = buffers.get(RequestClass.INTERACTIVE);
+        ClassBuffer bulk = buffers.get(RequestClass.BULK);
+
+        int size = Math.min(bufferedCount(), Math.max(1, policy.maxSize()));
+        int interactiveShare = (int) Math.ceil(size * (double) interactiveWeight / (interactiveWeight + 1));
+        int interactiveTaken = Math.min(interactive.ids.size(), Math.max(interactiveShare, size - bulk.ids.size()));
+        int bulkTaken = Math.min(bulk.ids.size(), size - interactiveTaken);
+
+        Batch batch = new Batch(new ArrayList<>(interactiveTaken + bulkTaken), new long[RequestClass.values().length][],
+                new int[RequestClass.values().length], flushReason);
+        take(RequestClass.INTERACTIVE, interactive, interactiveTaken, batch);
+        take(RequestClass.BULK, bulk, bulkTaken, batch);
+        return batch;
+    }
+
+    private void take(RequestClass requestClass, ClassBuffer buffer, int count, Batch batch) {
+        if (count == 0) {
+            return;
+        }
+        batch.ids.addAll(buffer.ids.subList(0, count));
+        batch.arrivals[requestClass.ordinal()] = buffer.arrivals;
+        batch.counts[requestClass.ordinal()] = count;
+
+        List<String> leftIds = new ArrayList<>(buffer.ids.subList(count, buffer.ids.size()));
+        long[] leftArrivals = new long[Math.max(16, Integer.highestOneBit(Math.max(1, leftIds.size())) << 1)];
+        System.arraycopy(buffer.arrivals, count, leftArrivals, 0, leftIds.size());
+        buffer.ids = leftIds;
+        buffer.arrivals = leftArrivals;
+
+        // The timeout of the taken IDs is dropped, the IDs left over keep the max wait of their oldest one
+        buffer.sequence++;
+        if (buffer.pendingTimeout != null) {
+            buffer.pendingTimeout.dispose();
+            buffer.pendingTimeout = null;
+        }
+        if (!leftIds.isEmpty()) {
+            scheduleTimeout(requestClass, buffer, leftArrivals[0]);
+        }
+    }
+
+    private void scheduleTimeout(RequestClass requestClass, ClassBuffer buffer, long oldestArrival) {
+        long sequence = buffer.sequence;
+        long delay = Math.max(0, oldestArrival + maxWait(requestClass).toNanos() - System.nanoTime());
+        buffer.pendingTimeout = timer.schedule(() -> onTimeout(requestClass, sequence), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private Duration maxWait(RequestClass requestClass) {
+        Duration maxWait = policy.maxWait();
+        if (requestClass == RequestClass.INTERACTIVE && interactiveMaxWait.compareTo(maxWait) < 0) {
+            return interactiveMaxWait;
+        }
+        return maxWait;
+    }
+
+    private int bufferedCount() {
+        int count = 0;
+        for (ClassBuffer buffer : buffers.values()) {
+            count += buffer.ids.size();
+        }
+        return count;
+    }
+
+    /**
+     * The IDs of one class waiting for a batch, with their arrival time.
+     */
+    private static final class ClassBuffer {
+
+        private List<String> ids = new ArrayList<>();
+        private long[] arrivals = new long[16];
+        private Disposable pendingTimeout;
+        private long sequence; // Identifies the buffer a timeout was scheduled for, a late timeout must not cut the next batch
+
+        private void add(String id, long arrival) {
+            if (ids.size() == arrivals.length) {
+                arrivals = Arrays.copyOf(arrivals, arrivals.length * 2);
+            }
+            arrivals[ids.size()] = arrival;
+            ids.add(id);
+        }
+    }
+
+    /**
+     * A cut batch, with the arrival times and the number of IDs it holds of each class (indexed by ordinal).
+     */
+    private record Batch(List<String> ids, long[][] arrivals, int[] counts, FlushReason flushReason) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.ecommerce.service.master.batch;
+
+import java.time.Duration;
+
+/**
+ * The static batching: always up to QUEUE_API_PARAM_MAX_CAP IDs or QUEUE_API_WAIT_MAX_TIME, whatever the traffic.
+ */
+public record FixedBatchPolicy(int maxSize, Duration maxWait) implements BatchPolicy {
+
+    @Override
+    public void recordArrival(long nanoTime) {
+        // Nothing to tune
+    }
+
+    @Override
+    public void recordUpstreamLatency(Duration latency) {
+        // Nothing to tune
+    }
+}
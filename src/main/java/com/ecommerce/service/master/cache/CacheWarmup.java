@@ -0,0 +1,196 @@
+package com.ecommerce.service.master.cache;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.service.master.queue.QueueRejectedException;
+import com.ecommerce.service.master.queue.RequestClass;
+import com.ecommerce.service.master.queue.RequestQueueProcessor;
+import com.ecommerce.service.master.queue.ResponseStatus;
+import com.ecommerce.util.GatewayParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class CacheWarmup {
+
+    public enum WarmupState {
+        PENDING,    // The application is not ready yet, the warmup has not started
+        WARMING,    // The hot IDs are being fetched
+        COMPLETED,  // Every hot ID has been fetched (or there was none)
+        TIMED_OUT   // CACHE_API_WARMUP_TIMEOUT elapsed first, the remaining IDs are left to the traffic
+    }
+
+    private static final int TICKS_PER_SECOND = 10; // The hot IDs are sent in chunks, at most 10 per second and per endpoint
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    @Value("${CACHE_API_ENABLED}")
+    private boolean cacheApiEnabled;
+
+    @Value("${CACHE_API_WARMUP_TIMEOUT}")
+    private long warmupTimeout;
+
+    @Autowired
+    private EndpointRegistry endpointRegistry;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private RequestQueueProcessor requestQueueProcessor;
+
+    @Autowired
+    private GatewayParser parser;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    private volatile WarmupState state = WarmupState.PENDING;
+    private volatile int hotIds;
+    private final AtomicInteger warmedIds = new AtomicInteger();
+
+    /**
+     * This method pre-warms the response cache once the application is ready, with the hot IDs known in advance
+     * (top sellers, campaign items...) listed per endpoint in CACHE_API_WARMUP_LIST, so the first requests find them cached.
+     *
+     * The hot IDs go through the normal path of the gateway requests, the RequestQueueProcessor: the IDs already cached
+     * (e.g. restored by the ResponseCacheSnapshot) are skipped, the others are admitted, batched and fetched like any other,
+     * their responses landing in the ResponseDataCacheEntity. Each endpoint is paced to CACHE_API_WARMUP_RATE IDs per second,
+     * so the warmup does not become the burst it is meant to avoid.
+     *
+     * Until the warmup completes, the WarmupHealthIndicator reports the gateway OUT_OF_SERVICE (readiness group), so the
+     * load balancer does not route traffic to a cold node. The warmup is an optimization: after CACHE_API_WARMUP_TIMEOUT ms,
+     * the gateway is ready whatever is left, and IDs rejected by the admission control or failing upstream are only counted out.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Map<String, List<String>> hotIdsPerEndpoint = cacheApiEnabled ? readHotIds() : Collections.emptyMap();
+        hotIds = hotIdsPerEndpoint.values().stream().mapToInt(List::size).sum();
+        if (hotIds == 0) {
+            state = WarmupState.COMPLETED;
+            return;
+        }
+
+        state = WarmupState.WARMING;
+        long startTime = System.nanoTime();
+        log.info("Warming the cache up with {} hot ID(s) of endpoint(s) {}.", hotIds, hotIdsPerEndpoint.keySet());
+
+        Flux.fromIterable(hotIdsPerEndpoint.entrySet())
+                .flatMap(entry -> warmUp(entry.getKey(), entry.getValue()))                                             // The endpoints are warmed concurrently, each at its own pace
+                .then()
+                .timeout(Duration.ofMillis(warmupTimeout))                                                              // A slow or down internal service does not keep the gateway out of service
+                .subscribe(null,
+                        e -> {
+                            state = WarmupState.TIMED_OUT;
+                            log.warn("Cache warmup not completed within {} ms ({} of {} hot IDs), accepting traffic anyway.",
+                                    warmupTimeout, warmedIds.get(), hotIds);
+                        },
+                        () -> {
+                            state = WarmupState.COMPLETED;
+                            log.info("Warmed the cache up with {} of {} hot ID(s) in {} ms.", warmedIds.get(), hotIds,
+                                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                        });
+    }
+
+    private Mono<Void> warmUp(String endpoint, List<String> ids) {
+        int rate = endpointProperties.get("CACHE_API_WARMUP_RATE", endpoint, Integer.class);
+        int chunkSize = Math.max(1, rate / TICKS_PER_SECOND);
+        Duration tick = Duration.ofNanos(chunkSize * TimeUnit.SECONDS.toNanos(1) / Math.max(1, rate));
+        Duration deadline = Duration.ofMillis(warmupTimeout);
+
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + chunkSize)));
+        }
+
+        return Flux.fromIterable(chunks)
+                .delayElements(tick)                                                                                    // Paces the chunks to CACHE_API_WARMUP_RATE IDs per second
+                .flatMap(chunk -> requestQueueProcessor.queueAndProcessRequest(endpoint, chunk, deadline, RequestClass.BULK)
+                        .doOnNext(response -> response.status().values().forEach(status -> {                            // Only the answered IDs (found or not) are cached
+                            if (status == ResponseStatus.OK || status == ResponseStatus.NOT_FOUND) {
+                                warmedIds.incrementAndGet();
+                            }
+                        }))
+                        .onErrorResume(QueueRejectedException.class, e -> Mono.empty()))                               // Shed IDs are left to the traffic
+                .then();
+    }
+
+    /**
+     * Reads the hot IDs of each endpoint from its CACHE_API_WARMUP_LIST resource (e.g. file:/etc/gateway/hot-products.txt),
+     * one or several comma separated IDs per line, blank lines and lines starting with # being ignored.
+     * Invalid IDs are skipped, as is a list which cannot be read.
+     *
+     * @return The distinct valid IDs per endpoint, only for the endpoints having some.
+     */
+    private Map<String, List<String>> readHotIds() {
+        Map<String, List<String>> hotIdsPerEndpoint = new LinkedHashMap<>();
+        for (String endpoint : endpointRegistry.getNames()) {
+            String location = endpointProperties.get("CACHE_API_WARMUP_LIST", endpoint, String.class);
+            if (location.isBlank()) {
+                continue;
+            }
+
+            Set<String> ids = new LinkedHashSet<>();
+            int invalidIds = 0;
+            Resource resource = resourceLoader.getResource(location);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    for (String id : StringUtils.commaDelimitedListToStringArray(line)) {
+                        try {
+                            ids.addAll(parser.parseIds(endpointRegistry.get(endpoint).idType(), List.of(id.trim())));
+                        } catch (RuntimeException e) {
+                            invalidIds++;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Endpoint [{}]: Failed to read the hot IDs of [{}] ({}).", endpoint, location, e.toString());
+                continue;
+            }
+
+            if (invalidIds > 0) {
+                log.warn("Endpoint [{}]: Skipped {} invalid hot ID(s) of [{}].", endpoint, invalidIds, location);
+            }
+            if (!ids.isEmpty()) {
+                hotIdsPerEndpoint.put(endpoint, List.copyOf(ids));
+            }
+        }
+        return hotIdsPerEndpoint;
+    }
+
+    public WarmupState getState() {
+        return state;
+    }
+
+    public int getHotIds() {
+        return hotIds;
+    }
+
+    public int getWarmedIds() {
+        return warmedIds.get();
+    }
+}
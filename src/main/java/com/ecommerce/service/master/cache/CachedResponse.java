@@ -0,0 +1,17 @@
+package com.ecommerce.service.master.cache;
+
+import java.util.List;
+
+/**
+ * The data cached for one ID, along with the moment (System.nanoTime) until which it is considered fresh.
+ * Between that moment and its eviction, the entry is stale: it can still be served while being revalidated.
+ *
+ * @param data The data received from the internal service, empty for an ID the service does not know.
+ * @param freshUntil The System.nanoTime after which the entry is stale.
+ */
+public record CachedResponse(List<?> data, long freshUntil) {
+
+    public boolean isStale() {
+        return System.nanoTime() - freshUntil > 0;
+    }
+}
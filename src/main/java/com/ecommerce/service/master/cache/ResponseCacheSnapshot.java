@@ -0,0 +1,248 @@
+package com.ecommerce.service.master.cache;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.util.RawJsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class ResponseCacheSnapshot {
+
+    private static final int MAGIC = 0x47574353; // "GWCS"
+    private static final int VERSION = 2;        // 2: int lengths of the endpoint and ID (short in 1)
+    private static final int HEADER_SIZE = 16;   // Magic, version and the time of the snapshot
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    @Value("${CACHE_API_SNAPSHOT_PATH}")
+    private String snapshotPath;
+
+    @Value("${CACHE_API_SNAPSHOT_INTERVAL}")
+    private long snapshotInterval;
+
+    @Autowired
+    private ResponseDataCacheEntity responseDataCache;
+
+    @Autowired
+    private EndpointRegistry endpointRegistry;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private RawJsonParser rawJsonParser;
+
+    private Disposable periodicSnapshot;
+
+    /**
+     * This method warms the response cache up at startup from the snapshot of the previous run (CACHE_API_SNAPSHOT_PATH),
+     * then snapshots the cache every CACHE_API_SNAPSHOT_INTERVAL ms, so that a restarted gateway does not send
+     * its whole traffic to the internal services until its cache fills again.
+     *
+     * The snapshot is a memory-mapped binary file:
+     * - a header: magic number, format version, and the wall-clock time of the snapshot,
+     * - one length-prefixed record per entry: endpoint, ID, wall-clock end of freshness and the JSON data of the ID,
+     *   each field of variable size being prefixed by its int length.
+     *
+     * The freshness is stored as wall-clock time, so the TTLs keep running while the gateway is down:
+     * an entry comes back fresh, stale (served while revalidated) or not at all, as if it had never left the cache.
+     * Records are self-delimited, so a truncated tail is ignored, and a snapshot which cannot be read is only logged:
+     * the gateway then starts cold.
+     *
+     * The records are self-delimited, so the format allows appending, but each snapshot rewrites the whole file
+     * rather than appending to it: the hottest entries are ranked again at every snapshot, and entries leave the top,
+     * expire or get refreshed in between, so an appended file would mostly grow with outdated records and need
+     * compacting anyway. A snapshot of CACHE_API_SNAPSHOT_MAX_ENTRIES per endpoint is small enough to be rewritten
+     * every CACHE_API_SNAPSHOT_INTERVAL, and the rewrite keeps the file a consistent, atomically replaced image of the cache.
+     */
+    @PostConstruct
+    private void init() {
+        if (snapshotPath.isBlank()) {
+            return;
+        }
+
+        Path path = Path.of(snapshotPath);
+        if (Files.exists(path)) {
+            long startTime = System.nanoTime();
+            try {
+                int restored = load(path);
+                log.info("Restored {} cache entries from [{}] in {} ms.", restored, path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to restore the cache snapshot [{}], starting cold ({}).", path, e.toString());
+            }
+        }
+
+        if (snapshotInterval > 0) {
+            periodicSnapshot = Schedulers.boundedElastic().schedulePeriodically(this::snapshot, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * The last snapshot is taken on shutdown, so a rolling restart hands over an up-to-date cache.
+     */
+    @PreDestroy
+    private void close() {
+        if (snapshotPath.isBlank()) {
+            return;
+        }
+        if (periodicSnapshot != null) {
+            periodicSnapshot.dispose();
+        }
+        snapshot();
+    }
+
+    private synchronized void snapshot() {
+        Path path = Path.of(snapshotPath);
+        try {
+            int written = write(path);
+            log.debug("Wrote {} cache entries to [{}].", written, path);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write the cache snapshot [{}] ({}).", path, e.toString());
+        }
+    }
+
+    /**
+     * Writes the CACHE_API_SNAPSHOT_MAX_ENTRIES hottest entries of each endpoint to a temporary file,
+     * which then atomically replaces the snapshot: a reader never sees a half-written snapshot.
+     *
+     * @return The number of entries written.
+     */
+    private int write(Path path) throws IOException {
+        long nowMillis = System.currentTimeMillis();
+        long nowNanos = System.nanoTime();
+
+        // The records are encoded first, so the file is mapped once with its final size
+        List<byte[]> records = new ArrayList<>();
+        long size = HEADER_SIZE;
+        for (String endpoint : endpointRegistry.getNames()) {
+            int limit = endpointProperties.get("CACHE_API_SNAPSHOT_MAX_ENTRIES", endpoint, Integer.class);
+            for (Map.Entry<String, CachedResponse> entry : responseDataCache.getHottest(endpoint, limit).entrySet()) {
+                long freshUntilMillis = nowMillis + TimeUnit.NANOSECONDS.toMillis(entry.getValue().freshUntil() - nowNanos);
+                byte[] record = encode(endpoint, entry.getKey(), freshUntilMillis, OBJECT_MAPPER.writeValueAsBytes(entry.getValue().data()));
+                records.add(record);
+                size += Integer.BYTES + record.length;
+            }
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(nowMillis);
+            for (byte[] record : records) {
+                buffer.putInt(record.length).put(record);
+            }
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return records.size();
+    }
+
+    private byte[] encode(String endpoint, String id, long freshUntilMillis, byte[] data) {
+        byte[] endpointBytes = endpoint.getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Integer.BYTES + endpointBytes.length + Integer.BYTES + idBytes.length + Long.BYTES + Integer.BYTES + data.length)
+                .putInt(endpointBytes.length).put(endpointBytes)
+                .putInt(idBytes.length).put(idBytes)
+                .putLong(freshUntilMillis)
+                .putInt(data.length).put(data)
+                .array();
+    }
+
+    /**
+     * Restores the entries of the snapshot into the ResponseDataCacheEntity, skipping the endpoints which are not
+     * registered anymore. The data is decoded the way the endpoint currently caches it (raw JSON or decoded lists).
+     * The snapshots of version 1 (short lengths) are still read, so an upgraded gateway restarts warm.
+     *
+     * @return The number of entries restored.
+     */
+    private int load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported cache snapshot version " + version);
+            }
+            buffer.getLong(); // The time of the snapshot, the freshness of each record being absolute
+
+            long nowMillis = System.currentTimeMillis();
+            long nowNanos = System.nanoTime();
+            int restored = 0;
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    log.warn("Ignoring the truncated tail of the cache snapshot [{}].", path);
+                    break;
+                }
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+
+                try {
+                    String endpoint = readString(record, version);
+                    String id = readString(record, version);
+                    long freshUntilMillis = record.getLong();
+                    byte[] data = readBytes(record, record.getInt());
+
+                    if (endpointRegistry.get(endpoint) != null) {
+                        long freshUntil = nowNanos + TimeUnit.MILLISECONDS.toNanos(freshUntilMillis - nowMillis);
+                        responseDataCache.restore(endpoint, id, new CachedResponse(decode(endpoint, data), freshUntil));
+                        restored++;
+                    }
+                } catch (BufferUnderflowException e) {
+                    log.warn("Ignoring a malformed record of the cache snapshot [{}].", path);
+                }
+            }
+            return restored;
+        }
+    }
+
+    private String readString(ByteBuffer record, int version) {
+        int length = version == 1 ? Short.toUnsignedInt(record.getShort()) : record.getInt();
+        return new String(readBytes(record, length), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(ByteBuffer record, int length) {
+        if (length < 0 || length > record.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return bytes;
+    }
+
+    private List<?> decode(String endpoint, byte[] data) throws IOException {
+        if (endpointProperties.get("UPSTREAM_API_RAW_PAYLOADS", endpoint, Boolean.class)) {
+            return rawJsonParser.parseValue(data);
+        }
+        return OBJECT_MAPPER.readValue(data, List.class);
+    }
+}
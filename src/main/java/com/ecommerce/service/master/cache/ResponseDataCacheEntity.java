@@ -0,0 +1,145 @@
+package com.ecommerce.service.master.cache;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class ResponseDataCacheEntity {
+
+    @Value("${CACHE_API_ENABLED}")
+    private boolean cacheApiEnabled;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The Concurrent Hash Map which contains, per different internal endpoint, the bounded cache of the data
+     * already received from the internal services.
+     * Each cache holds at most CACHE_API_MAX_ENTRIES, evicting with Caffeine's W-TinyLFU policy so hot IDs survive
+     * bursts of one-off lookups.
+     *
+     * Entries live for:
+     * - CACHE_API_TTL when the ID is known, plus CACHE_API_STALE_WHILE_REVALIDATE during which the entry is stale
+     *   but still served while a single background refresh is in flight (the PendingRequestRegistry coalesces refreshes),
+     * - CACHE_API_NEGATIVE_TTL when the ID is unknown to the internal service (empty data), so repeated lookups
+     *   of random IDs do not reach the internal services every time.
+     *
+     * Hit / miss / eviction counters are published per endpoint as the Micrometer "cache.*" meters.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, Cache<String, CachedResponse>> dataCache = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached entry for an ID, or null when the ID is not cached (or the cache is disabled).
+     * The returned entry may be stale, see CachedResponse.isStale().
+     *
+     * @param endpoint The internal endpoint.
+     * @param id The ID to look up.
+     * @return The cached entry or null.
+     */
+    public CachedResponse get(String endpoint, String id) {
+        return cacheApiEnabled ? getOrCreateCache(endpoint).getIfPresent(id) : null;
+    }
+
+    /**
+     * Stores the data received for an ID, empty data being cached as a negative entry.
+     *
+     * @param endpoint The internal endpoint.
+     * @param id The ID the data belongs to.
+     * @param data The data received from the internal service.
+     */
+    public void put(String endpoint, String id, List<?> data) {
+        if (!cacheApiEnabled) {
+            return;
+        }
+
+        long ttl = endpointProperties.get(data.isEmpty() ? "CACHE_API_NEGATIVE_TTL" : "CACHE_API_TTL", endpoint, Long.class);
+        if (ttl > 0) {
+            getOrCreateCache(endpoint).put(id, new CachedResponse(data, System.nanoTime() + Duration.ofMillis(ttl).toNanos()));
+        }
+    }
+
+    /**
+     * Returns the hottest entries of an endpoint, as ranked by Caffeine's frequency sketch, for the ResponseCacheSnapshot.
+     *
+     * @param endpoint The internal endpoint.
+     * @param limit The max number of entries.
+     * @return The entries, the most frequently used first (empty when the cache is disabled).
+     */
+    public Map<String, CachedResponse> getHottest(String endpoint, int limit) {
+        if (!cacheApiEnabled) {
+            return Collections.emptyMap();
+        }
+        return getOrCreateCache(endpoint).policy().eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElse(Collections.emptyMap());
+    }
+
+    /**
+     * Restores an entry read from the ResponseCacheSnapshot, unless the ID was cached meanwhile (fresher data).
+     * The entry keeps its own freshness, possibly already stale, and expires as if it had never left the cache.
+     *
+     * @param endpoint The internal endpoint.
+     * @param id The ID the data belongs to.
+     * @param response The restored entry.
+     */
+    public void restore(String endpoint, String id, CachedResponse response) {
+        if (cacheApiEnabled) {
+            getOrCreateCache(endpoint).asMap().putIfAbsent(id, response);
+        }
+    }
+
+    private Cache<String, CachedResponse> getOrCreateCache(String endpoint) {
+        return dataCache.computeIfAbsent(endpoint, key -> {
+            long staleWindow = Duration.ofMillis(endpointProperties.get("CACHE_API_STALE_WHILE_REVALIDATE", key, Long.class)).toNanos();
+
+            Cache<String, CachedResponse> cache = Caffeine.newBuilder()
+                    .expireAfter(new StaleWhileRevalidateExpiry(staleWindow))
+                    .maximumSize(endpointProperties.get("CACHE_API_MAX_ENTRIES", key, Long.class))
+                    .recordStats()
+                    .build();
+
+            return CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.response", "endpoint", key);
+        });
+    }
+
+    /**
+     * Keeps an entry until its freshness ends, plus the stale window for known IDs.
+     * Negative entries (empty data) are never served stale.
+     */
+    private record StaleWhileRevalidateExpiry(long staleWindow) implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String id, CachedResponse response, long currentTime) {
+            long freshness = response.freshUntil() - currentTime; // Negative for an entry restored already stale
+            return Math.max(0, response.data().isEmpty() ? freshness : freshness + staleWindow);
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, CachedResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(id, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String id, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
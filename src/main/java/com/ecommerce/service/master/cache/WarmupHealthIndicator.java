@@ -0,0 +1,28 @@
+package com.ecommerce.service.master.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * The "warmup" health component, part of the readiness group (/actuator/health/readiness):
+ * OUT_OF_SERVICE until the CacheWarmup has completed or timed out, UP afterwards.
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private CacheWarmup cacheWarmup;
+
+    @Override
+    public Health health() {
+        CacheWarmup.WarmupState state = cacheWarmup.getState();
+        boolean warm = state == CacheWarmup.WarmupState.COMPLETED || state == CacheWarmup.WarmupState.TIMED_OUT;
+        return (warm ? Health.up() : Health.outOfService())
+                .withDetail("state", state)
+                .withDetail("hotIds", cacheWarmup.getHotIds())
+                .withDetail("warmedIds", cacheWarmup.getWarmedIds())
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.ecommerce.service.master.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class ClusterPeers {
+
+    /** The header of the lookups forwarded by a peer, holding the URL of the forwarding node. */
+    public static final String FORWARDED_HEADER = "X-Gateway-Forwarded-By";
+
+    @Value("${CLUSTER_PEERS:}")
+    private List<String> peers; // e.g., http://localhost:8080,http://localhost:8081
+
+    @Value("${CLUSTER_SELF:}")
+    private String self; // e.g., http://localhost:8080
+
+    @Value("${CLUSTER_VIRTUAL_NODES}")
+    private int virtualNodes;
+
+    @Value("${CLUSTER_PEER_TIMEOUT}")
+    private long peerTimeout;
+
+    @Value("${CLUSTER_PEER_RETRY_INTERVAL}")
+    private long peerRetryInterval;
+
+    @Autowired
+    private WebClient.Builder webClientBuilder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<String> nodes = List.of();
+
+    private ConsistentHashRing ring;
+
+    /**
+     * The Concurrent Hash Map which contains the WebClient per peer, and the one holding until when (System.nanoTime)
+     * a peer which failed a lookup is skipped, its IDs being fetched locally meanwhile.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> unavailableUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the hash ring of the peer mode from CLUSTER_PEERS, which must list CLUSTER_SELF.
+     * Without CLUSTER_PEERS, or with a single node, every ID is owned locally.
+     */
+    @PostConstruct
+    private void initRing() {
+        List<String> nodes = peers.stream().map(String::trim).filter(peer -> !peer.isEmpty()).distinct().toList();
+        if (nodes.size() < 2) {
+            return;
+        }
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("CLUSTER_SELF [" + self + "] must be one of CLUSTER_PEERS " + nodes);
+        }
+        this.nodes = nodes;
+        ring = new ConsistentHashRing(nodes, virtualNodes);
+    }
+
+    public boolean isEnabled() {
+        return ring != null;
+    }
+
+    public boolean isSelf(String node) {
+        return self.equals(node);
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * @return Whether the node is one of the other nodes of CLUSTER_PEERS, i.e. may forward lookups to this one.
+     */
+    public boolean isPeer(String node) {
+        return nodes.contains(node) && !isSelf(node);
+    }
+
+    /**
+     * @return Whether this node owns the ID on its ring.
+     */
+    public boolean isOwned(String endpoint, String id) {
+        return isSelf(ring.ownerOf(endpoint + "/" + id));
+    }
+
+    /**
+     * Groups the IDs of a request by the node they are fetched from: their owner on the ring, or this node for
+     * the IDs it owns and the IDs of an owner currently unavailable (local fallback).
+     * The IDs are counted by the "gateway.cluster.ids" counter, per endpoint and route.
+     *
+     * @param endpoint The internal endpoint.
+     * @param ids The distinct IDs of the request.
+     * @return The IDs per node, this node included.
+     */
+    public Map<String, List<String>> groupByNode(String endpoint, List<String> ids) {
+        Map<String, List<String>> idsPerNode = new LinkedHashMap<>();
+        int owned = 0;
+        int fallback = 0;
+        for (String id : ids) {
+            String node = ring.ownerOf(endpoint + "/" + id);
+            if (isSelf(node)) {
+                owned++;
+            } else if (!isAvailable(node)) {
+                node = self;
+                fallback++;
+            }
+            idsPerNode.computeIfAbsent(node, key -> new ArrayList<>()).add(id);
+        }
+
+        count(endpoint, "local", owned);
+        count(endpoint, "forwarded", ids.size() - owned - fallback);
+        count(endpoint, "fallback", fallback);
+        return idsPerNode;
+    }
+
+    /**
+     * Skips a peer for CLUSTER_PEER_RETRY_INTERVAL ms after a failed lookup, its IDs being fetched locally.
+     */
+    public void markUnavailable(String peer, int fallbackIds, String endpoint) {
+        unavailableUntil.put(peer, System.nanoTime() + Duration.ofMillis(peerRetryInterval).toNanos());
+        count(endpoint, "fallback", fallbackIds);
+    }
+
+    private boolean isAvailable(String peer) {
+        Long until = unavailableUntil.get(peer);
+        if (until == null) {
+            return true;
+        }
+        if (System.nanoTime() - until >= 0) {
+            unavailableUntil.remove(peer, until);
+            return true;
+        }
+        return false;
+    }
+
+    public WebClient getWebClient(String peer) {
+        return webClients.computeIfAbsent(peer, key -> webClientBuilder.clone().baseUrl(key).build());
+    }
+
+    /**
+     * @return The max time to wait for a peer lookup (CLUSTER_PEER_TIMEOUT).
+     */
+    public Duration getPeerTimeout() {
+        return Duration.ofMillis(peerTimeout);
+    }
+
+    private void count(String endpoint, String route, int count) {
+        if (count == 0) {
+            return;
+        }
+        Counter.builder("gateway.cluster.ids")
+                .description("IDs fetched by their owner node, forwarded to it, or fetched locally while it is unavailable")
+                .tag("endpoint", endpoint)
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
@@ -0,0 +1,53 @@
+package com.ecommerce.service.master.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent hash ring of the gateway nodes: each node is placed on the ring at virtualNodes points, and a key
+ * is owned by the first node found clockwise from its own hash. Adding or removing a node only moves the keys
+ * of its own points, and the virtual nodes spread the keys evenly between the nodes.
+ *
+ * The hash only depends on the bytes of the keys and the node names, so every node sharing the same list of nodes
+ * computes the same owners.
+ */
+public class ConsistentHashRing {
+
+    private final TreeMap<Integer, String> ring = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public String ownerOf(String key) {
+        Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes, followed by the MurmurHash3 finalizer so that close keys (e.g. sequential IDs)
+     * land far apart on the ring.
+     */
+    static int hash(String key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.service.master.hedge;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * The hedging state of one endpoint: its recently observed upstream latencies and its hedge budget.
+ *
+ * The hedge delay is the configured percentile of the last LATENCY_WINDOW successful calls, recomputed every
+ * RECOMPUTE_EVERY samples; no call is hedged until MIN_SAMPLES latencies have been observed.
+ *
+ * The budget caps the hedge rate like a token bucket: each primary call earns maxRate tokens (up to MAX_TOKENS),
+ * each hedge spends one, so at most maxRate hedges are issued per call over time, even when the upstream slows down as a whole.
+ */
+public class HedgingPolicy {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final double MAX_TOKENS = 10;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final double maxRate;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long sampleCount;
+    private volatile long hedgeDelayNanos = -1;
+
+    private double tokens;
+
+    public HedgingPolicy(boolean enabled, double percentile, double maxRate) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("The hedging percentile must be between 0 and 1 (exclusive): " + percentile);
+        }
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.maxRate = maxRate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the latency of a successful upstream call.
+     */
+    public synchronized void recordLatency(Duration latency) {
+        latencies[(int) (sampleCount % LATENCY_WINDOW)] = latency.toNanos();
+        sampleCount++;
+        if (sampleCount >= MIN_SAMPLES && sampleCount % RECOMPUTE_EVERY == 0) {
+            int size = (int) Math.min(sampleCount, LATENCY_WINDOW);
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            hedgeDelayNanos = sorted[(int) Math.ceil(percentile * size) - 1];
+        }
+    }
+
+    /**
+     * @return The time after which a call is hedged, null while not enough latencies have been observed.
+     */
+    public Duration hedgeDelay() {
+        long delay = hedgeDelayNanos;
+        return delay < 0 ? null : Duration.ofNanos(delay);
+    }
+
+    /**
+     * Earns the hedge budget of a primary call.
+     */
+    public synchronized void recordCall() {
+        tokens = Math.min(MAX_TOKENS, tokens + maxRate);
+    }
+
+    /**
+     * @return true if the budget allows one more hedge, which is then spent.
+     */
+    public synchronized boolean tryAcquireHedge() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ecommerce.service.master.hedge;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class HedgingPolicyEntity {
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The Concurrent Hash Map which contains the hedging policy per endpoint, built from UPSTREAM_API_HEDGE_*.
+     * The current hedge delay of the enabled endpoints is published as the "gateway.hedge.delay" gauge.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, HedgingPolicy> hedgingPolicies = new ConcurrentHashMap<>();
+
+    public HedgingPolicy getOrCreatePolicy(String endpoint) {
+        return hedgingPolicies.computeIfAbsent(endpoint, this::createPolicy);
+    }
+
+    private HedgingPolicy createPolicy(String endpoint) {
+        HedgingPolicy policy = new HedgingPolicy(
+                endpointProperties.get("UPSTREAM_API_HEDGE_ENABLED", endpoint, Boolean.class),
+                endpointProperties.get("UPSTREAM_API_HEDGE_PERCENTILE", endpoint, Double.class),
+                endpointProperties.get("UPSTREAM_API_HEDGE_MAX_RATE", endpoint, Double.class));
+
+        if (policy.isEnabled()) {
+            Gauge.builder("gateway.hedge.delay", policy, p -> {
+                        Duration delay = p.hedgeDelay();
+                        return delay == null ? Double.NaN : delay.toNanos() / 1e6;
+                    })
+                    .description("Time in ms after which an upstream call is hedged")
+                    .tag("endpoint", endpoint)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        return policy;
+    }
+}
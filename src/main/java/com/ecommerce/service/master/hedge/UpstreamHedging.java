@@ -0,0 +1,115 @@
+package com.ecommerce.service.master.hedge;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class UpstreamHedging {
+
+    @Autowired
+    private HedgingPolicyEntity hedgingPolicies;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Hedges an upstream call of an endpoint whose UPSTREAM_API_HEDGE_ENABLED is set: if the call has not answered
+     * after the UPSTREAM_API_HEDGE_PERCENTILE of its recently observed latencies, the same call is fired a second time
+     * and the first one to answer wins, the other one being cancelled.
+     *
+     * - A call failing before the hedge delay fails straight away, without being hedged (e.g. a 404 is not retried),
+     * - Once hedged, the call only fails when both attempts have failed, with the error of the last one,
+     * - Hedges are capped to UPSTREAM_API_HEDGE_MAX_RATE per call, so a slow upstream does not get twice the traffic.
+     *
+     * Issued, won and throttled hedges are counted by the "gateway.hedge.requests" counter, per endpoint and outcome.
+     *
+     * @param endpoint The internal endpoint called.
+     * @param call The cold upstream call, subscribed once per attempt (each attempt carrying its own timeout).
+     * @return The hedged call, or the call itself when hedging is disabled for the endpoint.
+     */
+    public <T> Mono<T> hedge(String endpoint, Mono<T> call) {
+        HedgingPolicy policy = hedgingPolicies.getOrCreatePolicy(endpoint);
+        if (!policy.isEnabled()) {
+            return call;
+        }
+
+        Mono<T> timedCall = Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            return call.doOnSuccess(response -> policy.recordLatency(Duration.ofNanos(System.nanoTime() - startTime)));
+        });
+
+        return Mono.defer(() -> {
+            policy.recordCall();
+            Duration hedgeDelay = policy.hedgeDelay();
+            if (hedgeDelay == null) {
+                return timedCall;                                                                                      // Not enough latencies observed yet to know when to hedge
+            }
+            return Mono.create(sink -> race(endpoint, policy, hedgeDelay, timedCall, sink));
+        });
+    }
+
+    private <T> void race(String endpoint, HedgingPolicy policy, Duration hedgeDelay, Mono<T> call, MonoSink<T> sink) {
+        AtomicBoolean settled = new AtomicBoolean();
+        AtomicInteger running = new AtomicInteger(1);
+        Disposable.Composite attempts = Disposables.composite();
+        sink.onDispose(attempts);                                                                                       // The losing attempt is cancelled once the race is settled, both are on downstream cancellation
+
+        attempts.add(subscribeAttempt(endpoint, call, false, settled, running, sink));
+        attempts.add(Schedulers.parallel().schedule(() -> {
+            if (settled.get()) {
+                return;
+            }
+            if (!policy.tryAcquireHedge()) {
+                count(endpoint, "throttled");
+                return;
+            }
+            running.incrementAndGet();
+            count(endpoint, "issued");
+            attempts.add(subscribeAttempt(endpoint, call, true, settled, running, sink));
+        }, hedgeDelay.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    private <T> Disposable subscribeAttempt(String endpoint, Mono<T> call, boolean hedge,
+                                            AtomicBoolean settled, AtomicInteger running, MonoSink<T> sink) {
+        return call.subscribe(
+                response -> {
+                    if (settled.compareAndSet(false, true)) {
+                        if (hedge) {
+                            count(endpoint, "won");
+                        }
+                        sink.success(response);
+                    }
+                },
+                error -> {
+                    if (running.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                        sink.error(error);
+                    }
+                },
+                () -> {
+                    if (running.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                        sink.success();
+                    }
+                });
+    }
+
+    private void count(String endpoint, String outcome) {
+        Counter.builder("gateway.hedge.requests")
+                .description("Hedged upstream calls issued, won (answered first) or throttled by the hedge budget")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
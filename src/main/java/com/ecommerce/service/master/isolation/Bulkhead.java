@@ -0,0 +1,102 @@
+package com.ecommerce.service.master.isolation;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The bulkhead of one endpoint: a cap on its concurrent upstream calls, so that a slow internal service
+ * cannot hold every connection and scheduler thread of the gateway.
+ * Calls beyond the cap are not queued, they fail fast, unless they ask to wait for a permit (see acquire):
+ * a released permit is then handed over to the oldest waiting call.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private int inFlight;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    public Bulkhead(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= maxConcurrentCalls) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Waits for a permit, in turn with the other waiting calls. The caller bounds the wait (e.g. with a timeout):
+     * a cancelled wait leaves the queue, or passes its permit on if it was just granted one.
+     *
+     * @return A Mono completing once the permit is held, to be released like one of tryAcquire.
+     */
+    public Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            synchronized (this) {
+                if (inFlight < maxConcurrentCalls) {
+                    inFlight++;
+                    waiter.granted = true;
+                } else {
+                    waiters.add(waiter);
+                }
+            }
+            if (waiter.granted) {
+                sink.success();
+                return;
+            }
+            sink.onCancel(() -> cancel(waiter));
+        });
+    }
+
+    public void release() {
+        Waiter next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+            next.granted = true; // The permit goes to the waiter as it is, inFlight unchanged
+        }
+        next.sink.success();
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            if (!waiter.granted) {
+                waiters.remove(waiter);
+                return;
+            }
+        }
+        release(); // Granted while being cancelled, its permit is passed on
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Void> sink;
+        private boolean granted; // Guarded by the bulkhead
+
+        private Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+    }
+}
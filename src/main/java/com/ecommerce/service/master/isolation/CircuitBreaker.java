@@ -0,0 +1,165 @@
+package com.ecommerce.service.master.isolation;
+
+import java.time.Duration;
+
+/**
+ * The circuit breaker of one endpoint, over a count-based sliding window of its last upstream calls.
+ *
+ * - CLOSED: every call goes through; the circuit opens once the window holds at least minCalls calls
+ *   and the rate of failed or slow calls reaches the failure rate,
+ * - OPEN: no call goes through until the open duration has elapsed, then the circuit turns HALF_OPEN,
+ * - HALF_OPEN: only halfOpenCalls trial calls go through; the circuit closes when they all succeed,
+ *   and opens again as soon as one of them fails or is slow.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The permission of one upstream call: denied, granted as a regular call, or granted as one of the half-open trial calls.
+     */
+    public enum Permission {
+        DENIED, GRANTED, TRIAL;
+
+        public boolean isGranted() {
+            return this != DENIED;
+        }
+    }
+
+    private final boolean enabled;
+    private final int minCalls;
+    private final double failureRate;
+    private final long slowCallNanos;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] failures; // The sliding window, true for a failed or slow call
+    private int windowIndex;
+    private int windowSize;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(boolean enabled, int window, int minCalls, double failureRate,
+                          Duration slowCall, Duration openDuration, int halfOpenCalls) {
+        this.enabled = enabled;
+        this.minCalls = Math.min(minCalls, window);
+        this.failureRate = failureRate;
+        this.slowCallNanos = slowCall.toNanos();
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.failures = new boolean[window];
+    }
+
+    /**
+     * @return Whether an upstream call may be issued, which then has to report its outcome (onResult)
+     * or its cancellation (releasePermission, with the returned permission).
+     */
+    public synchronized Permission tryAcquirePermission() {
+        if (!enabled) {
+            return Permission.GRANTED;
+        }
+        return switch (getState()) {
+            case CLOSED -> Permission.GRANTED;
+            case OPEN -> Permission.DENIED;
+            case HALF_OPEN -> {
+                if (halfOpenPermits == 0) {
+                    yield Permission.DENIED;
+                }
+                halfOpenPermits--;
+                yield Permission.TRIAL;
+            }
+        };
+    }
+
+    /**
+     * Gives back the permission of a call cancelled before knowing its outcome, so a trial call is not lost.
+     * Only a trial permission is given back, and only while the circuit is still half-open: a call granted while CLOSED
+     * never took a trial permit, and a circuit which opened or closed meanwhile has no trial left to give back.
+     */
+    public synchronized void releasePermission(Permission permission) {
+        if (permission == Permission.TRIAL && state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+            halfOpenPermits++;
+        }
+    }
+
+    /**
+     * Records the outcome of an upstream call.
+     *
+     * @param failed true if the call failed because of the internal service (5xx, timeout, connection error).
+     * @param latency The duration of the call, a call slower than the slow call threshold counting as failed.
+     */
+    public synchronized void onResult(boolean failed, Duration latency) {
+        if (!enabled) {
+            return;
+        }
+        boolean failure = failed || latency.toNanos() > slowCallNanos;
+
+        switch (state) {
+            case OPEN -> {
+                // Late outcome of a call issued before the circuit opened
+            }
+            case HALF_OPEN -> {
+                if (failure) {
+                    open();
+                } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (windowSize == failures.length) {
+                    windowFailures -= failures[windowIndex] ? 1 : 0;
+                } else {
+                    windowSize++;
+                }
+                failures[windowIndex] = failure;
+                windowFailures += failure ? 1 : 0;
+                windowIndex = (windowIndex + 1) % failures.length;
+
+                if (windowSize >= minCalls && getFailureRate() >= failureRate) {
+                    open();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The current state, an OPEN circuit turning HALF_OPEN once its open duration has elapsed.
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        return state;
+    }
+
+    /**
+     * @return The rate of failed or slow calls in the sliding window.
+     */
+    public synchronized double getFailureRate() {
+        return windowSize == 0 ? 0 : (double) windowFailures / windowSize;
+    }
+
+    public synchronized int getWindowSize() {
+        return windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowSize = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ecommerce.service.master.isolation;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.service.master.pending.PendingRequestRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Service
+public class EndpointIsolation {
+
+    @Autowired
+    private EndpointIsolationEntity isolationEntity;
+
+    @Autowired
+    private PendingRequestRegistry pendingRequests;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Tells whether new IDs may wait on an endpoint: its circuit is not open and it has room for their waiters
+     * (BULKHEAD_API_MAX_WAITERS). When it is not the case, the IDs which are not cached are fast-failed as UNAVAILABLE
+     * instead of piling up behind a struggling internal service, the cached data still being served.
+     *
+     * @param endpoint The internal endpoint.
+     * @param waiters The number of new waiters.
+     * @return true if the waiters are accepted.
+     */
+    public boolean isAvailable(String endpoint, int waiters) {
+        if (isolationEntity.getCircuitBreaker(endpoint).getState() == CircuitBreaker.State.OPEN) {
+            count(endpoint, "circuit-open", waiters);
+            return false;
+        }
+        if (pendingRequests.countWaiters(endpoint) + waiters > endpointProperties.get("BULKHEAD_API_MAX_WAITERS", endpoint, Integer.class)) {
+            count(endpoint, "waiters-full", waiters);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Guards an upstream call of an endpoint with its bulkhead and circuit breaker:
+     * - the call fails fast with an EndpointUnavailableException when the bulkhead is full
+     *   (BULKHEAD_API_MAX_CONCURRENT_CALLS calls in flight) or the circuit does not permit it,
+     * - otherwise its outcome and latency are reported to the circuit breaker; 4xx answers are not failures
+     *   of the internal service and count as successful calls.
+     *
+     * @param endpoint The internal endpoint called.
+     * @param call The cold upstream call.
+     * @return The guarded call, checked on each subscription.
+     */
+    public <T> Mono<T> guard(String endpoint, Mono<T> call) {
+        return guard(endpoint, call, Duration.ZERO);
+    }
+
+    /**
+     * Guards an upstream call like guard(endpoint, call), except that when the bulkhead is full the call waits
+     * up to permitWait for a permit, in turn with the other waiting calls, before failing as unavailable.
+     * Used by the per-ID calls, whose batches (one per lane, plus their hedges) together easily outnumber the bulkhead
+     * without the internal service struggling.
+     *
+     * @param endpoint The internal endpoint called.
+     * @param call The cold upstream call.
+     * @param permitWait The max time to wait for a bulkhead permit, zero to fail fast.
+     * @return The guarded call, checked on each subscription.
+     */
+    public <T> Mono<T> guard(String endpoint, Mono<T> call, Duration permitWait) {
+        Bulkhead bulkhead = isolationEntity.getBulkhead(endpoint);
+        CircuitBreaker circuitBreaker = isolationEntity.getCircuitBreaker(endpoint);
+
+        return Mono.defer(() -> {
+            Mono<Void> permit;
+            if (bulkhead.tryAcquire()) {
+                permit = Mono.empty();
+            } else if (permitWait.isZero()) {
+                return bulkheadFull(endpoint, bulkhead);
+            } else {
+                permit = bulkhead.acquire().timeout(permitWait, bulkheadFull(endpoint, bulkhead));
+            }
+
+            return permit.then(Mono.defer(() -> {
+                CircuitBreaker.Permission permission = circuitBreaker.tryAcquirePermission();
+                if (!permission.isGranted()) {
+                    bulkhead.release();
+                    count(endpoint, "circuit-open", 1);
+                    return Mono.error(new EndpointUnavailableException("Endpoint [" + endpoint + "] circuit is open"));
+                }
+
+                long startTime = System.nanoTime();
+                return call
+                        .doOnSuccess(response -> circuitBreaker.onResult(false, Duration.ofNanos(System.nanoTime() - startTime)))
+                        .doOnError(e -> circuitBreaker.onResult(isUpstreamFailure(e), Duration.ofNanos(System.nanoTime() - startTime)))
+                        .doOnCancel(() -> circuitBreaker.releasePermission(permission))
+                        .doFinally(signal -> bulkhead.release());
+            }));
+        });
+    }
+
+    private <T> Mono<T> bulkheadFull(String endpoint, Bulkhead bulkhead) {
+        return Mono.defer(() -> {
+            count(endpoint, "bulkhead-full", 1);
+            return Mono.error(new EndpointUnavailableException("Endpoint [" + endpoint + "] bulkhead is full ("
+                    + bulkhead.getMaxConcurrentCalls() + " calls in flight)"));
+        });
+    }
+
+    public int getMaxConcurrentCalls(String endpoint) {
+        return isolationEntity.getBulkhead(endpoint).getMaxConcurrentCalls();
+    }
+
+    private boolean isUpstreamFailure(Throwable e) {
+        return !(e instanceof WebClientResponseException responseException && responseException.getStatusCode().is4xxClientError());
+    }
+
+    private void count(String endpoint, String reason, int count) {
+        Counter.builder("gateway.isolation.rejections")
+                .description("IDs or upstream calls rejected by the circuit breaker or the bulkheads of the endpoint")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
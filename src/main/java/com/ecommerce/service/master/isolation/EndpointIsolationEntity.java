@@ -0,0 +1,78 @@
+package com.ecommerce.service.master.isolation;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class EndpointIsolationEntity {
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The Concurrent Hash Map which contains the circuit breaker per endpoint, built from CIRCUIT_API_*.
+     * Published as the "gateway.circuit.state" gauge (0 closed, 1 half open, 2 open).
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * The Concurrent Hash Map which contains the bulkhead per endpoint, built from BULKHEAD_API_MAX_CONCURRENT_CALLS.
+     * Published as the "gateway.bulkhead.calls" gauge.
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public CircuitBreaker getCircuitBreaker(String endpoint) {
+        return circuitBreakers.computeIfAbsent(endpoint, key -> {
+            CircuitBreaker circuitBreaker = new CircuitBreaker(
+                    endpointProperties.get("CIRCUIT_API_ENABLED", key, Boolean.class),
+                    endpointProperties.get("CIRCUIT_API_WINDOW", key, Integer.class),
+                    endpointProperties.get("CIRCUIT_API_MIN_CALLS", key, Integer.class),
+                    endpointProperties.get("CIRCUIT_API_FAILURE_RATE", key, Double.class),
+                    Duration.ofMillis(endpointProperties.get("CIRCUIT_API_SLOW_CALL", key, Long.class)),
+                    Duration.ofMillis(endpointProperties.get("CIRCUIT_API_OPEN_DURATION", key, Long.class)),
+                    endpointProperties.get("CIRCUIT_API_HALF_OPEN_CALLS", key, Integer.class));
+            Gauge.builder("gateway.circuit.state", circuitBreaker, c -> switch (c.getState()) {
+                        case CLOSED -> 0;
+                        case HALF_OPEN -> 1;
+                        case OPEN -> 2;
+                    })
+                    .description("State of the endpoint circuit breaker: 0 closed, 1 half open, 2 open")
+                    .tag("endpoint", key)
+                    .register(meterRegistry);
+            return circuitBreaker;
+        });
+    }
+
+    public Bulkhead getBulkhead(String endpoint) {
+        return bulkheads.computeIfAbsent(endpoint, key -> {
+            Bulkhead bulkhead = new Bulkhead(endpointProperties.get("BULKHEAD_API_MAX_CONCURRENT_CALLS", key, Integer.class));
+            Gauge.builder("gateway.bulkhead.calls", bulkhead, Bulkhead::getInFlight)
+                    .description("Upstream calls in flight for the endpoint")
+                    .tag("endpoint", key)
+                    .register(meterRegistry);
+            return bulkhead;
+        });
+    }
+
+    public Map<String, CircuitBreaker> getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    public Map<String, Bulkhead> getBulkheads() {
+        return bulkheads;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.service.master.isolation;
+
+/**
+ * Thrown when an endpoint is isolated: its circuit is open or its bulkhead is full.
+ * The IDs of the endpoint which are not cached are then reported as UNAVAILABLE.
+ */
+public class EndpointUnavailableException extends RuntimeException {
+
+    public EndpointUnavailableException(String message) {
+        super(message);
+    }
+}
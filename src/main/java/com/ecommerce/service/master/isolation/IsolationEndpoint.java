@@ -0,0 +1,65 @@
+package com.ecommerce.service.master.isolation;
+
+import com.ecommerce.config.EndpointRegistry;
+import com.ecommerce.service.master.pending.PendingRequestRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exposes the circuit breaker and bulkhead state of each endpoint on /actuator/isolation (and /actuator/isolation/{endpoint}).
+ */
+@Component
+@Endpoint(id = "isolation")
+public class IsolationEndpoint {
+
+    @Autowired
+    private EndpointIsolationEntity isolationEntity;
+
+    @Autowired
+    private PendingRequestRegistry pendingRequests;
+
+    @Autowired
+    private EndpointRegistry endpointRegistry;
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> isolation() {
+        Map<String, Map<String, Object>> isolation = new TreeMap<>();
+        isolationEntity.getCircuitBreakers().keySet().forEach(endpoint -> isolation.put(endpoint, describe(endpoint)));
+        isolationEntity.getBulkheads().keySet().forEach(endpoint -> isolation.computeIfAbsent(endpoint, this::describe));
+        return isolation;
+    }
+
+    /**
+     * @return The state of a registered endpoint, null (404) for any other name, so that no breaker, bulkhead
+     * or gauge is created for it.
+     */
+    @ReadOperation
+    public Map<String, Object> endpointIsolation(@Selector String endpoint) {
+        if (endpointRegistry.get(endpoint) == null) {
+            return null;
+        }
+        return describe(endpoint);
+    }
+
+    private Map<String, Object> describe(String endpoint) {
+        CircuitBreaker circuitBreaker = isolationEntity.getCircuitBreaker(endpoint);
+        Bulkhead bulkhead = isolationEntity.getBulkhead(endpoint);
+
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("circuitState", circuitBreaker.getState());
+        description.put("failureRate", circuitBreaker.getFailureRate());
+        description.put("windowCalls", circuitBreaker.getWindowSize());
+        description.put("callsInFlight", bulkhead.getInFlight());
+        description.put("callsWaiting", bulkhead.getWaiting());
+        description.put("maxConcurrentCalls", bulkhead.getMaxConcurrentCalls());
+        description.put("waiters", pendingRequests.countWaiters(endpoint));
+        return description;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecommerce.service.master.metrics;
+
+import com.ecommerce.service.master.batch.EndpointBatcher.FlushReason;
+import com.ecommerce.service.master.queue.RequestClass;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of each stage a requested ID goes through, published as Micrometer timers with a percentile histogram
+ * (exposed on /actuator/prometheus), all tagged by endpoint:
+ * - "gateway.stage.parse": validation of the IDs of the endpoint in the GatewayController,
+ * - "gateway.stage.queue.wait": time an ID spends in the queue until its batch is cut, tagged by request class and flush reason,
+ * - "gateway.stage.upstream": one call to the internal service (batched or per ID), tagged by mode and outcome,
+ * - "gateway.stage.fanout": caching and emitting the data of a batch to its waiters,
+ * - "gateway.stage.assembly": building the response of the endpoint once all its IDs are answered.
+ *
+ * The queue depth and the pending waiters are published as gauges by the RequestQueueEntity and the PendingRequestRegistry.
+ */
+@Component
+public class PipelineMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public void recordParse(String endpoint, long nanos) {
+        getTimer("gateway.stage.parse", "Validation of the requested IDs", endpoint)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the queue wait of the IDs of one class in a batch, from their arrival in the batcher to the cut of the batch.
+     *
+     * @param endpoint The internal endpoint.
+     * @param requestClass The class of the requests which issued the IDs.
+     * @param flushReason Why the batch was cut, queue full or timeout reached.
+     * @param arrivals The arrival time of each ID of the class in the batch, System.nanoTime based.
+     * @param count The number of IDs of the class in the batch.
+     * @param cutTime The time the batch was cut.
+     */
+    public void recordQueueWait(String endpoint, RequestClass requestClass, FlushReason flushReason, long[] arrivals, int count, long cutTime) {
+        Timer timer = Timer.builder("gateway.stage.queue.wait")
+                .description("Time spent by an ID in the queue until its batch is cut")
+                .tag("endpoint", endpoint)
+                .tag("class", requestClass.name().toLowerCase())
+                .tag("flush", flushReason.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        for (int i = 0; i < count; i++) {
+            timer.record(cutTime - arrivals[i], TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordUpstream(String endpoint, String mode, String outcome, long nanos) {
+        Timer.builder("gateway.stage.upstream")
+                .description("Call to the internal service")
+                .tag("endpoint", endpoint)
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFanOut(String endpoint, long nanos) {
+        getTimer("gateway.stage.fanout", "Caching and emitting the received data to the waiters", endpoint)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAssembly(String endpoint, long nanos) {
+        getTimer("gateway.stage.assembly", "Building the endpoint response once all its IDs are answered", endpoint)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer getTimer(String name, String description, String endpoint) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("endpoint", endpoint)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
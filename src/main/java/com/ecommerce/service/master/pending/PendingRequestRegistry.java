@@ -0,0 +1,140 @@
+package com.ecommerce.service.master.pending;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class PendingRequestRegistry {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * The Concurrent Hash Map which contains, per different internal endpoint, the IDs waiting for a response
+     * from the internal services.
+     *
+     * There is a single Sinks.One per pending ID, shared by every request waiting on that ID: the sink replays
+     * its outcome to each of its subscribers, so no per-waiter structure is needed.
+     * This is also what coalesces identical IDs across requests: as long as an ID is buffered or in flight,
+     * new requests for it attach to its sink instead of enqueuing it again.
+     * An ID is removed from the map as soon as its outcome is known, whether it is data (complete) or an error (fail).
+     *
+     * Singleton pattern.
+     */
+    private final Map<String, Map<String, Sinks.One<List<?>>>> pendingRequests = new ConcurrentHashMap<>();
+
+    /**
+     * The number of requests currently waiting on a pending ID, per endpoint.
+     * Published as the "gateway.pending.waiters" gauge.
+     */
+    private final Map<String, AtomicInteger> waiterCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a waiter for an ID, attaching to the pending sink of the ID if there is already one.
+     * Only the issuer of the pending entry (see Waiter) must enqueue the ID.
+     *
+     * Issued and coalesced waiters are counted by the "gateway.coalescing.ids" counter, per endpoint and outcome.
+     *
+     * @param endpoint The internal endpoint.
+     * @param id The ID to wait for.
+     * @return The Waiter, with a Mono of the response data of the ID.
+     */
+    public Waiter register(String endpoint, String id) {
+        Map<String, Sinks.One<List<?>>> endpointRequests = getPendingRequests(endpoint);
+
+        // A new sink is only allocated when the ID does not look pending yet
+        Sinks.One<List<?>> sink = endpointRequests.get(id);
+        boolean issuer = false;
+        if (sink == null) {
+            Sinks.One<List<?>> newSink = Sinks.one();
+            sink = endpointRequests.putIfAbsent(id, newSink);
+            if (sink == null) {
+                sink = newSink;
+                issuer = true;
+            }
+        }
+        getCoalescingCounter(endpoint, issuer).increment();
+
+        AtomicInteger waiterCount = getWaiterCount(endpoint);
+        Mono<List<?>> response = sink.asMono()
+                .doOnSubscribe(subscription -> waiterCount.incrementAndGet())
+                .doFinally(signal -> waiterCount.decrementAndGet());                                                   // On data, error, timeout or cancellation
+        return new Waiter(response, issuer);
+    }
+
+    /**
+     * Emits the data of an ID to every request waiting on it.
+     *
+     * @param endpoint The internal endpoint.
+     * @param id The ID whose data has been received.
+     * @param data The data received from the internal service.
+     */
+    public void complete(String endpoint, String id, List<?> data) {
+        Sinks.One<List<?>> sink = getPendingRequests(endpoint).remove(id);
+        if (sink != null) {
+            sink.tryEmitValue(data);
+        }
+    }
+
+    /**
+     * Emits an error to every request waiting on the given IDs, so none of them is left hanging when a fetch fails.
+     *
+     * @param endpoint The internal endpoint.
+     * @param ids The IDs whose fetch failed.
+     * @param error The cause of the failure.
+     */
+    public void fail(String endpoint, Collection<String> ids, Throwable error) {
+        Map<String, Sinks.One<List<?>>> endpointRequests = getPendingRequests(endpoint);
+        for (String id : ids) {
+            Sinks.One<List<?>> sink = endpointRequests.remove(id);
+            if (sink != null) {
+                sink.tryEmitError(error);
+            }
+        }
+    }
+
+    /**
+     * @return The number of requests currently waiting on a pending ID of the endpoint.
+     */
+    public int countWaiters(String endpoint) {
+        return getWaiterCount(endpoint).get();
+    }
+
+    private Map<String, Sinks.One<List<?>>> getPendingRequests(String endpoint) {
+        return pendingRequests.computeIfAbsent(endpoint, key -> new ConcurrentHashMap<>());
+    }
+
+    private Counter getCoalescingCounter(String endpoint, boolean issuer) {
+        return Counter.builder("gateway.coalescing.ids")
+                .description("Requested IDs issued to the queue, or coalesced onto an ID already pending")
+                .tag("endpoint", endpoint)
+                .tag("outcome", issuer ? "issued" : "coalesced")
+                .register(meterRegistry);
+    }
+
+    private AtomicInteger getWaiterCount(String endpoint) {
+        return waiterCounts.computeIfAbsent(endpoint, key -> {
+            AtomicInteger waiterCount = new AtomicInteger();
+            Gauge.builder("gateway.pending.waiters", waiterCount, AtomicInteger::get)
+                    .description("Requests waiting on a response from the internal service")
+                    .tag("endpoint", key)
+                    .register(meterRegistry);
+            Gauge.builder("gateway.pending.ids", getPendingRequests(key), Map::size)
+                    .description("Distinct IDs waiting on a response from the internal service")
+                    .tag("endpoint", key)
+                    .register(meterRegistry);
+            return waiterCount;
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.service.master.pending;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * A request waiting on a pending ID.
+ *
+ * @param response The Mono emitting the data of the ID, or the error of its fetch.
+ * @param issuer true if this waiter created the pending entry, and so is responsible for enqueuing the ID;
+ *               false if it was coalesced onto an ID already buffered or in flight.
+ */
+public record Waiter(Mono<List<?>> response, boolean issuer) {
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.service.master.queue;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Service
+public class AdmissionControl {
+
+    @Autowired
+    private RequestQueueEntity requestQueue;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Admits IDs into an endpoint queue, reserving their room in it, or rejects them all:
+     * - 503 Service Unavailable when the estimated wait of the queue exceeds QUEUE_API_MAX_ESTIMATED_WAIT,
+     * - 429 Too Many Requests when they do not fit within QUEUE_API_MAX_DEPTH.
+     *
+     * The Retry-After of a rejection is the estimated wait, at least 1s.
+     * Accepted and rejected IDs are counted by the "gateway.admission.ids" counter, per endpoint and outcome.
+     *
+     * @param endpoint The internal endpoint.
+     * @param count The number of IDs to queue.
+     * @throws QueueRejectedException if the IDs are rejected.
+     */
+    public void admit(String endpoint, int count) {
+        QueueLoad load = requestQueue.getLoad(endpoint);
+        Duration estimatedWait = load.estimatedWait();
+
+        Duration maxEstimatedWait = Duration.ofMillis(endpointProperties.get("QUEUE_API_MAX_ESTIMATED_WAIT", endpoint, Long.class));
+        if (estimatedWait.compareTo(maxEstimatedWait) > 0) {
+            count(endpoint, "rejected", count);
+            throw new QueueRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Endpoint [" + endpoint + "] is overloaded, estimated wait " + estimatedWait.toMillis() + " ms", retryAfter(estimatedWait));
+        }
+
+        if (!load.tryAcquire(count)) {
+            count(endpoint, "rejected", count);
+            throw new QueueRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Endpoint [" + endpoint + "] queue is full (" + load.getDepth() + "/" + load.getCapacity() + ")", retryAfter(estimatedWait));
+        }
+
+        count(endpoint, "accepted", count);
+    }
+
+    /**
+     * Same as admit, returning false instead of throwing, for the IDs nobody waits for (e.g. background refreshes).
+     */
+    public boolean tryAdmit(String endpoint, int count) {
+        try {
+            admit(endpoint, count);
+            return true;
+        } catch (QueueRejectedException e) {
+            return false;
+        }
+    }
+
+    private void count(String endpoint, String outcome, int count) {
+        Counter.builder("gateway.admission.ids")
+                .description("IDs accepted into or rejected from the endpoint queues")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    private Duration retryAfter(Duration estimatedWait) {
+        return Duration.ofSeconds(Math.max(1, (estimatedWait.toMillis() + 999) / 1000));
+    }
+}
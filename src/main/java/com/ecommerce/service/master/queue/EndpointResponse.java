@@ -0,0 +1,14 @@
+package com.ecommerce.service.master.queue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The collected responses of one endpoint for a gateway request.
+ *
+ * @param endpoint The internal endpoint.
+ * @param data The data per ID, null for the IDs which timed out or failed.
+ * @param status The outcome per ID.
+ */
+public record EndpointResponse(String endpoint, Map<String, List<?>> data, Map<String, ResponseStatus> status) {
+}
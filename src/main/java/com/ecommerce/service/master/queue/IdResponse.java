@@ -0,0 +1,17 @@
+package com.ecommerce.service.master.queue;
+
+import java.util.List;
+
+/**
+ * The response for one ID of an endpoint.
+ *
+ * @param id The requested ID.
+ * @param data The data returned by the internal service, null when it timed out or failed.
+ * @param status The outcome of the lookup.
+ */
+public record IdResponse(String id, List<?> data, ResponseStatus status) {
+
+    public static IdResponse of(String id, List<?> data) {
+        return new IdResponse(id, data, data.isEmpty() ? ResponseStatus.NOT_FOUND : ResponseStatus.OK);
+    }
+}
@@ -0,0 +1,109 @@
+package com.ecommerce.service.master.queue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The load of one endpoint queue: the IDs accepted into the queue and not yet answered by the internal service
+ * (buffered or in flight), bounded by a capacity, and the rate at which they are answered.
+ *
+ * The estimated wait of a newly queued ID follows Little's law: depth / throughput.
+ */
+public class QueueLoad {
+
+    private static final long THROUGHPUT_WINDOW_NANOS = Duration.ofSeconds(1).toNanos();
+    private static final double ALPHA = 0.3; // Weight of the newest window in the throughput moving average
+
+    private final int capacity;
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private long windowStart = System.nanoTime();
+    private long windowCount;
+    private volatile double throughputPerSecond;
+
+    public QueueLoad(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reserves room in the queue for a number of IDs.
+     *
+     * @param count The number of IDs to queue.
+     * @return false if they do not fit within the capacity, in which case nothing is reserved.
+     */
+    public boolean tryAcquire(int count) {
+        while (true) {
+            int current = depth.get();
+            if (current + count > capacity) {
+                return false;
+            }
+            if (depth.compareAndSet(current, current + count)) {
+                if (current == 0) {
+                    startBusyPeriod();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The throughput is only measured while the queue is busy: a window which has not seen any answered ID yet
+     * restarts when the queue leaves idleness, so idle time does not read as a low throughput.
+     */
+    private synchronized void startBusyPeriod() {
+        if (windowCount == 0) {
+            windowStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Frees the room of IDs which have left the queue, answered or failed.
+     *
+     * @param count The number of IDs which left the queue.
+     */
+    public void release(int count) {
+        depth.addAndGet(-count);
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            windowCount += count;
+            long elapsed = now - windowStart;
+            if (elapsed >= THROUGHPUT_WINDOW_NANOS) {
+                double windowThroughput = windowCount * 1e9 / elapsed;
+                throughputPerSecond = throughputPerSecond == 0 ? windowThroughput : throughputPerSecond + ALPHA * (windowThroughput - throughputPerSecond);
+                windowStart = now;
+                windowCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back room reserved for IDs which finally did not enter the queue (e.g. coalesced onto a pending ID).
+     * Unlike release, it does not count as answered IDs in the throughput.
+     *
+     * @param count The number of IDs which did not enter the queue.
+     */
+    public void cancel(int count) {
+        depth.addAndGet(-count);
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The time a newly queued ID is expected to wait, zero while the throughput is not known yet.
+     */
+    public Duration estimatedWait() {
+        int currentDepth = depth.get();
+        double throughput = throughputPerSecond;
+        if (currentDepth == 0 || throughput == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis((long) (currentDepth * 1000 / throughput));
+    }
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.service.master.queue;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+/**
+ * Thrown by the AdmissionControl when IDs cannot be accepted into an endpoint queue.
+ * The gateway answers it with its status and a Retry-After header.
+ */
+public class QueueRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final Duration retryAfter;
+
+    public QueueRejectedException(HttpStatus status, String message, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
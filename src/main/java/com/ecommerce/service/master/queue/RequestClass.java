@@ -0,0 +1,28 @@
+package com.ecommerce.service.master.queue;
+
+/**
+ * The class of a gateway request, given by its X-Request-Class header: each class has its own lanes in the endpoint
+ * queues, and the batches are formed weighted-fairly between them (see EndpointBatcher).
+ */
+public enum RequestClass {
+    INTERACTIVE,    // Latency sensitive (e.g. storefront pages), flushed within QUEUE_API_INTERACTIVE_MAX_WAIT
+    BULK;           // Throughput oriented (bulk jobs, background refreshes and warmups), flushed within the batch policy max wait
+
+    /**
+     * @param header The X-Request-Class header, case insensitive, null when absent.
+     * @param defaultClass The class of the requests without the header.
+     * @return The request class.
+     * @throws IllegalArgumentException if the header is not a known class.
+     */
+    public static RequestClass from(String header, RequestClass defaultClass) {
+        if (header == null || header.isBlank()) {
+            return defaultClass;
+        }
+        for (RequestClass requestClass : values()) {
+            if (requestClass.name().equalsIgnoreCase(header.trim())) {
+                return requestClass;
+            }
+        }
+        throw new IllegalArgumentException("Unknown request class: " + header + ", expected interactive or bulk.");
+    }
+}
@@ -1,23 +1,105 @@
 package com.ecommerce.service.master.queue;
 
+import com.ecommerce.config.EndpointPropertyResolver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Sinks;
 
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class RequestQueueEntity {
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
-     * The Concurrent Hash Map which contains the reactive sinks (acts like a queue!) per endpoint.
+     * The Concurrent Hash Map which contains the reactive sinks (acts like a queue!) per endpoint, one per lane and request class.
      * It helps formally queuing the requests for processing.
      *
+     * The IDs of an endpoint are partitioned by hash into QUEUE_API_LANES lanes, each with its own sink and batcher,
+     * so that concurrent enqueues and batch cuts do not all serialize on one sink. An ID always maps to the same lane.
+     * Each lane has a sink per RequestClass, both feeding the batcher of the lane, so bulk IDs never queue in front of interactive ones.
+     *
      * Singleton pattern.
      */
-    private final Map<String, Sinks.Many<String>> requestQueues = new ConcurrentHashMap<>();
+    private final Map<String, Map<RequestClass, List<Sinks.Many<String>>>> requestQueues = new ConcurrentHashMap<>();
+
+    /**
+     * The load of each endpoint queue, bounded by QUEUE_API_MAX_DEPTH.
+     * Published as the "gateway.queue.depth" gauge.
+     */
+    private final Map<String, QueueLoad> queueLoads = new ConcurrentHashMap<>();
+
+    public List<Sinks.Many<String>> getOrCreateLanes(String endpoint, RequestClass requestClass) {
+        return requestQueues.computeIfAbsent(endpoint, key -> {
+            // If the queue does not exists, initializes a new multicast sink per lane and class with a backpressure buffer bounded to its share of the queue capacity
+            int laneCount = getLaneCount(key);
+            int laneCapacity = (getLoad(key).getCapacity() + laneCount - 1) / laneCount;
+            Map<RequestClass, List<Sinks.Many<String>>> classLanes = new EnumMap<>(RequestClass.class);
+            for (RequestClass laneClass : RequestClass.values()) {
+                List<Sinks.Many<String>> lanes = new ArrayList<>(laneCount);
+                for (int lane = 0; lane < laneCount; lane++) {
+                    lanes.add(Sinks.many().multicast().onBackpressureBuffer(laneCapacity, false));
+                }
+                classLanes.put(laneClass, Collections.unmodifiableList(lanes));
+            }
+            return classLanes;
+        }).get(requestClass);
+    }
+
+    /**
+     * @return The sink of the lane of the ID for its request class, the same lane for every request of this ID so they still coalesce.
+     */
+    public Sinks.Many<String> getOrCreateQueue(String endpoint, String id, RequestClass requestClass) {
+        List<Sinks.Many<String>> lanes = getOrCreateLanes(endpoint, requestClass);
+        int hash = id.hashCode();
+        return lanes.get(Math.floorMod(hash ^ (hash >>> 16), lanes.size())); // Spreads the high bits, like HashMap
+    }
+
+    /**
+     * Emits the ID into its lane. The sinks are serialized: an emit racing another one on the same lane (IDs of different
+     * requests hashing onto it) would fail with FAIL_NON_SERIALIZED instead of waiting, so the emits of a lane take turns
+     * on the lane itself. The emit drains synchronously into the batcher of the lane while the lane is held, so the lock covers
+     * buffering the ID and cutting a full batch, but not fetching it: the batches are handed to the BatchRequestHandler
+     * on another thread (see GatewayService.initQueues).
+     *
+     * @return The result of the emit, a failure only if the lane is full or terminated.
+     */
+    public Sinks.EmitResult enqueue(String endpoint, String id, RequestClass requestClass) {
+        Sinks.Many<String> queue = getOrCreateQueue(endpoint, id, requestClass);
+        synchronized (queue) {
+            return queue.tryEmitNext(id);
+        }
+    }
+
+    /**
+     * @return QUEUE_API_LANES of the endpoint, 0 meaning one lane per available processor.
+     */
+    public int getLaneCount(String endpoint) {
+        int lanes = endpointProperties.get("QUEUE_API_LANES", endpoint, Integer.class);
+        return lanes > 0 ? lanes : Runtime.getRuntime().availableProcessors();
+    }
 
-    public Sinks.Many<String> getOrCreateQueue(String endpoint) {
-        // If the queue does not exists, initializes a new multicast sink with backpressure handling
-        return requestQueues.computeIfAbsent(endpoint, key -> Sinks.many().multicast().onBackpressureBuffer());
+    public QueueLoad getLoad(String endpoint) {
+        return queueLoads.computeIfAbsent(endpoint, key -> {
+            QueueLoad load = new QueueLoad(endpointProperties.get("QUEUE_API_MAX_DEPTH", key, Integer.class));
+            Gauge.builder("gateway.queue.depth", load, QueueLoad::getDepth)
+                    .description("IDs accepted into the endpoint queue and not answered yet")
+                    .tag("endpoint", key)
+                    .register(meterRegistry);
+            return load;
+        });
     }
-}
\ No newline at end of file
+}
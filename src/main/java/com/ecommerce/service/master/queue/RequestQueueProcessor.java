@@ -1,14 +1,24 @@
 package com.ecommerce.service.master.queue;
 
-import com.ecommerce.service.master.cache.ResponseCacheEntity;
+import com.ecommerce.config.EndpointPropertyResolver;
+import com.ecommerce.service.master.batch.BatchRequestHandler;
+import com.ecommerce.service.master.cache.CachedResponse;
+import com.ecommerce.service.master.cache.ResponseDataCacheEntity;
+import com.ecommerce.service.master.cluster.ClusterPeers;
+import com.ecommerce.service.master.isolation.EndpointIsolation;
+import com.ecommerce.service.master.isolation.EndpointUnavailableException;
+import com.ecommerce.service.master.metrics.PipelineMetrics;
+import com.ecommerce.service.master.pending.PendingRequestRegistry;
+import com.ecommerce.service.master.pending.Waiter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class RequestQueueProcessor {
@@ -17,98 +27,273 @@ public class RequestQueueProcessor {
     private RequestQueueEntity requestQueue;
 
     @Autowired
-    private ResponseCacheEntity responseCache;
+    private PendingRequestRegistry pendingRequests;
+
+    @Autowired
+    private ResponseDataCacheEntity responseDataCache;
+
+    @Autowired
+    private EndpointPropertyResolver endpointProperties;
+
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    private EndpointIsolation endpointIsolation;
+
+    @Autowired
+    private ClusterPeers clusterPeers;
+
+    @Autowired
+    private BatchRequestHandler batchProcessor;
 
     /**
      * This service is really important as it sits between the GatewayController and the GatewayService logic.
      *
-     * It interacts with the RequestQueueSingleton to enqueue each ID for the respective endpoint and uses the ResponseCacheManager
-     * to cache the responses. The responses are asynchronously collected for each ID and, once all responses are received,
-     * the final result is returned as a Map.Entry containing the endpoint and the map of IDs with their associated response data.
+     * It interacts with the RequestQueueSingleton to enqueue each ID for the respective endpoint and uses the PendingRequestRegistry
+     * to wait for the responses. The responses are asynchronously collected for each ID and, once all responses are received,
+     * the final result is returned as an EndpointResponse containing the endpoint and the map of IDs with their associated response data.
      *
      * The method `queueAndProcessRequest` handles the entire flow of:
-     * - Enqueuing IDs for processing,
-     * - Waiting for the responses for each ID,
+     * - Answering the IDs already present in the ResponseDataCacheEntity straight away,
+     *   a stale entry being served as well while a single refresh of it is enqueued,
+     * - Fast-failing the remaining IDs as UNAVAILABLE when the endpoint is isolated (circuit open or too many waiters),
+     * - Admitting the remaining IDs into the queue (QueueRejectedException when the queue is overloaded),
+     * - Enqueuing the admitted IDs for processing in the lanes of the request class, unless they are already pending
+     *   for another request (buffered or in flight), in which case the request attaches to the existing pending call,
+     *   and in peer mode (CLUSTER_PEERS) looking the IDs owned by another gateway node up on it instead of enqueuing them,
+     * - Waiting for the responses for each ID, at most until the request deadline or the GATEWAY_API_ENDPOINT_TIMEOUT
+     *   of the endpoint (whichever comes first), the IDs not answered by then being reported as TIMEOUT,
      * - Building and returning the final response map once all responses are collected.
      *
-     * It utilizes a reactive approach via Flux and Mono, ensuring that the operations are performed asynchronously.
+     * It utilizes a reactive approach via Mono, ensuring that the operations are performed asynchronously.
      *
      * In short, is both responsible for sending the IDs to the queues and collecting the data once the responses are emitted from the sinks.
      *
      * @param endpoint The internal endpoint for which the request is being processed.
      * @param ids A list of IDs for which the requests are being made.
-     * @return A Mono containing the final result as a Map.Entry with the endpoint and the map of responses for each ID.
+     * @param deadline The time left to the gateway request.
+     * @param requestClass The class of the gateway request, whose lanes the IDs are queued in.
+     * @return A Mono containing the final result as an EndpointResponse with the map of responses and status for each ID.
      */
-    public Mono<Map.Entry<String, Map<String, List<?>>>> queueAndProcessRequest(String endpoint, List<String> ids) {
+    public Mono<EndpointResponse> queueAndProcessRequest(String endpoint, List<String> ids, Duration deadline, RequestClass requestClass) {
         // If ids are empty, return empty Mono
         if (ids.isEmpty()) {
-            return Mono.just(Map.entry(endpoint, Collections.emptyMap()));
+            return Mono.just(new EndpointResponse(endpoint, Collections.emptyMap(), Collections.emptyMap()));
+        }
+
+        return registerWaiters(endpoint, ids, deadline, requestClass)
+                .flatMap(waitingMonos -> Mono.zip(waitingMonos, results -> buildResponseMap(endpoint, ids, results)));
+    }
+
+    /**
+     * The streaming counterpart of queueAndProcessRequest: the same flow, except that the response of each ID
+     * is emitted as soon as it is known (cached IDs first), instead of being collected into an EndpointResponse.
+     *
+     * The returned Mono errors with a QueueRejectedException when the IDs are not admitted, before anything is streamed.
+     *
+     * @param endpoint The internal endpoint for which the request is being processed.
+     * @param ids A list of IDs for which the requests are being made.
+     * @param deadline The time left to the gateway request.
+     * @param requestClass The class of the gateway request, whose lanes the IDs are queued in.
+     * @return A Mono of the Flux of responses, one per ID, in the order they resolve.
+     */
+    public Mono<Flux<StreamedIdResponse>> streamRequest(String endpoint, List<String> ids, Duration deadline, RequestClass requestClass) {
+        if (ids.isEmpty()) {
+            return Mono.just(Flux.empty());
         }
 
-        List<Mono<Map.Entry<String, List<?>>>> waitingMonos = ids.stream()
-                        .map(id -> waitForResponse(endpoint, id))
-                        .toList();
+        return registerWaiters(endpoint, ids, deadline, requestClass)
+                .map(waitingMonos -> Flux.merge(waitingMonos)
+                        .map(response -> new StreamedIdResponse(endpoint, response.id(), response.data(), response.status())));
+    }
+
+    /**
+     * Answers the cached IDs, admits and enqueues the missing ones and registers their waiters,
+     * bounded by the request deadline or the GATEWAY_API_ENDPOINT_TIMEOUT of the endpoint (whichever comes first).
+     * The stale IDs are refreshed in the bulk lanes, nobody waiting for them.
+     *
+     * @return A Mono of the response Mono of each ID, in the order of the IDs, or a QueueRejectedException error.
+     */
+    private Mono<List<Mono<IdResponse>>> registerWaiters(String endpoint, List<String> ids, Duration deadline, RequestClass requestClass) {
+        Duration endpointTimeout = Duration.ofMillis(endpointProperties.get("GATEWAY_API_ENDPOINT_TIMEOUT", endpoint, Long.class));
+        Duration timeout = deadline.compareTo(endpointTimeout) < 0 ? deadline : endpointTimeout;
+
+        // Deferred, so that registering the waiters and enqueuing their IDs always happen together, on subscription
+        return Mono.defer(() -> {
+            // Cached IDs are answered immediately, only the missing (or stale) ones enter the queue
+            IdResponse[] cachedResponses = new IdResponse[ids.size()];
+            List<String> missingIds = new ArrayList<>();
+            List<String> refreshIds = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                CachedResponse cached = responseDataCache.get(endpoint, id);
+                if (cached != null) {
+                    cachedResponses[i] = IdResponse.of(id, cached.data());
+
+                    // Stale-while-revalidate, nobody waits for the refresh: its data only lands in the cache
+                    if (cached.isStale()) {
+                        refreshIds.add(id);
+                    }
+                } else {
+                    missingIds.add(id);
+                }
+            }
+
+            // An isolated endpoint only serves its cached data, nothing waits on it nor refreshes it
+            if (!missingIds.isEmpty() && !endpointIsolation.isAvailable(endpoint, missingIds.size())) {
+                for (int i = 0; i < ids.size(); i++) {
+                    if (cachedResponses[i] == null) {
+                        cachedResponses[i] = new IdResponse(ids.get(i), null, ResponseStatus.UNAVAILABLE);
+                    }
+                }
+                missingIds.clear();
+                refreshIds.clear();
+            }
+
+            // Admission control happens before registering any waiter, a rejected request leaves nothing behind
+            if (!refreshIds.isEmpty() && !admissionControl.tryAdmit(endpoint, refreshIds.size())) {
+                refreshIds.clear();
+            }
+            if (!missingIds.isEmpty()) {
+                try {
+                    admissionControl.admit(endpoint, missingIds.size());
+                } catch (QueueRejectedException e) {
+                    requestQueue.getLoad(endpoint).cancel(refreshIds.size());
+                    return Mono.error(e);
+                }
+            }
+
+            // Only the issuer of a pending ID enqueues it, the other waiters coalesce onto the same upstream call
+            List<String> issuedIds = new ArrayList<>();
+            List<String> issuedRefreshIds = new ArrayList<>();
+            List<Mono<IdResponse>> waitingMonos = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                if (cachedResponses[i] != null) {
+                    waitingMonos.add(Mono.just(cachedResponses[i]));
+                } else {
+                    waitingMonos.add(waitForResponse(endpoint, ids.get(i), timeout, issuedIds));
+                }
+            }
+            for (String id : refreshIds) {
+                if (pendingRequests.register(endpoint, id).issuer()) {
+                    issuedRefreshIds.add(id);
+                }
+            }
+
+            // The room admitted for the coalesced IDs is given back to the queue
+            requestQueue.getLoad(endpoint).cancel(missingIds.size() + refreshIds.size() - issuedIds.size() - issuedRefreshIds.size());
 
-        return Flux.fromIterable(ids)
-                .doOnNext(id -> enqueueRequest(endpoint, id))
-                .then(Mono.zip(waitingMonos, results -> buildResponseMap(endpoint, ids, results)));
+            dispatch(endpoint, issuedIds, requestClass);
+            dispatch(endpoint, issuedRefreshIds, RequestClass.BULK);
+            return Mono.just(waitingMonos);
+        });
     }
 
     /**
-     * Waits for a response for a specific ID by creating a sink and storing it in the response cache.
-     * Returns a Mono that emits the response data or an empty list if no data is received.
+     * Sends the issued IDs to be fetched: into the local queue, or in peer mode straight to the node owning them,
+     * so that they are batched once, by their owner, rather than by this node and then again by the owner.
+     *
+     * @param endpoint The endpoint for the request.
+     * @param ids The distinct IDs issued by the request.
+     * @param requestClass The class of the lanes the local IDs are queued in.
+     */
+    private void dispatch(String endpoint, List<String> ids, RequestClass requestClass) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!clusterPeers.isEnabled()) {
+            ids.forEach(id -> enqueueRequest(endpoint, id, requestClass));
+            return;
+        }
+        clusterPeers.groupByNode(endpoint, ids).forEach((node, nodeIds) -> {
+            if (clusterPeers.isSelf(node)) {
+                nodeIds.forEach(id -> enqueueRequest(endpoint, id, requestClass));
+            } else {
+                batchProcessor.onPeerLookup(endpoint, node, nodeIds);
+            }
+        });
+    }
+
+    /**
+     * Waits for a response for a specific ID by registering a waiter in the PendingRequestRegistry.
+     * Returns a Mono that emits the response data or an empty list if no data is received,
+     * or a TIMEOUT / UNAVAILABLE / ERROR response when no data arrives in time, the endpoint is isolated
+     * or the internal service call fails.
      *
      * @param endpoint The endpoint for the request.
      * @param id The ID for the request.
+     * @param timeout The maximum time to wait for the response.
+     * @param issuedIds Collects the ID if the waiter is its issuer, i.e. the ID has to be enqueued.
      * @return A Mono with the ID and its response data.
      */
-    private Mono<Map.Entry<String, List<?>>> waitForResponse(String endpoint, String id) {
-        Sinks.One<List<?>> sink = Sinks.one();
+    private Mono<IdResponse> waitForResponse(String endpoint, String id, Duration timeout, List<String> issuedIds) {
+        Waiter waiter = pendingRequests.register(endpoint, id);
+        if (waiter.issuer()) {
+            issuedIds.add(id);
+        }
 
-        // ComputeIfAbsent is needed as hashMap for endpoint is not initialized on first request processing
-        responseCache
-                .getCache()
-                .computeIfAbsent(endpoint, k -> new ConcurrentHashMap<>())
-                .computeIfAbsent(id, k -> new ArrayList<>())
-                .add(sink);
+        return waiter.response()
+                .defaultIfEmpty(Collections.emptyList())
+                .map(data -> IdResponse.of(id, data))
+                .timeout(timeout)
+                .onErrorResume(e -> Mono.just(new IdResponse(id, null, toStatus(e))));
+    }
 
-        return sink.asMono().defaultIfEmpty(Collections.emptyList()).map(data -> Map.entry(id, data));
+    private ResponseStatus toStatus(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return ResponseStatus.TIMEOUT;
+        }
+        return e instanceof EndpointUnavailableException ? ResponseStatus.UNAVAILABLE : ResponseStatus.ERROR;
     }
 
     /**
-     * Enqueues a request by adding the given ID to the appropriate request queue for the endpoint.
-     * Throws an exception if the queue is full or fails to add the ID.
+     * Enqueues a request by adding the given ID to the appropriate request queue for the endpoint (the lane of the ID in its class).
+     * The emits of concurrent requests into the same lane take turns, and if the queue still fails to take the ID
+     * (lane full or terminated), its room is released and its waiters are failed (ERROR status) rather than failing the whole request.
      *
      * @param endpoint The endpoint for the request.
      * @param id The ID to enqueue.
+     * @param requestClass The class of the request issuing the ID.
      */
-    private void enqueueRequest(String endpoint, String id) {
-        Sinks.Many<String> queue = requestQueue.getOrCreateQueue(endpoint);
-        if (queue == null || queue.tryEmitNext(id).isFailure()) {
-            throw new RuntimeException("Failed to queue request for " + endpoint + " with ID: " + id);
+    private void enqueueRequest(String endpoint, String id, RequestClass requestClass) {
+        Sinks.EmitResult result = requestQueue.enqueue(endpoint, id, requestClass);
+        if (result.isFailure()) {
+            requestQueue.getLoad(endpoint).release(1);
+            pendingRequests.fail(endpoint, List.of(id),
+                    new IllegalStateException("Failed to queue request for " + endpoint + " with ID: " + id + " (" + result + ")"));
         }
     }
 
     /**
-     * Constructs a map of IDs and their results, adding missing IDs with a null value.
-     * Returns the map with the endpoint as the key and the results as the value.
+     * Constructs a map of IDs and their results, adding missing IDs with a null value, along with the status of each ID.
+     * Returns the maps wrapped in an EndpointResponse for the endpoint, its build time being recorded as the assembly stage.
      *
      * @param endpoint The endpoint for the results.
      * @param ids The list of IDs.
      * @param results The results for each ID.
-     * @return A map of IDs to their results.
+     * @return The EndpointResponse of IDs to their results.
      */
-    private Map.Entry<String, Map<String, List<?>>> buildResponseMap(String endpoint, List<String> ids, Object[] results) {
+    private EndpointResponse buildResponseMap(String endpoint, List<String> ids, Object[] results) {
+        long startTime = System.nanoTime();
         Map<String, List<?>> collectedResults = new HashMap<>();
+        Map<String, ResponseStatus> collectedStatus = new HashMap<>();
         for (Object result : results) {
-            @SuppressWarnings("unchecked")
-            Map.Entry<String, List<?>> entry = (Map.Entry<String, List<?>>) result;
-            collectedResults.put(entry.getKey(), entry.getValue());
+            IdResponse response = (IdResponse) result;
+            collectedResults.put(response.id(), response.data());
+            collectedStatus.put(response.id(), response.status());
         }
 
-        ids.forEach(id -> collectedResults.putIfAbsent(id, null));
+        ids.forEach(id -> {
+            collectedResults.putIfAbsent(id, null);
+            collectedStatus.putIfAbsent(id, ResponseStatus.ERROR);
+        });
 
-        return Map.entry(endpoint, collectedResults);
+        pipelineMetrics.recordAssembly(endpoint, System.nanoTime() - startTime);
+        return new EndpointResponse(endpoint, collectedResults, collectedStatus);
     }
 
 }
@@ -0,0 +1,13 @@
+package com.ecommerce.service.master.queue;
+
+/**
+ * The outcome of the lookup of one ID, as reported by the partial-response mode of the gateway.
+ */
+public enum ResponseStatus {
+    OK,             // The internal service returned data for the ID
+    NOT_FOUND,      // The internal service does not know the ID
+    TIMEOUT,        // No answer for the ID within the request deadline or the endpoint timeout
+    ERROR,          // The internal service call for the ID failed
+    UNAVAILABLE,    // The endpoint is isolated (circuit open or bulkhead full) and the ID is not cached
+    REJECTED        // The ID was shed by the admission control, only reported by the streaming bulk requests
+}
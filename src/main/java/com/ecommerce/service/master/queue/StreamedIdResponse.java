@@ -0,0 +1,14 @@
+package com.ecommerce.service.master.queue;
+
+import java.util.List;
+
+/**
+ * The response for one ID of an endpoint, as streamed by the gateway (one NDJSON line or SSE event per ID).
+ *
+ * @param endpoint The internal endpoint.
+ * @param id The requested ID.
+ * @param data The data returned by the internal service, null when it timed out or failed.
+ * @param status The outcome of the lookup.
+ */
+public record StreamedIdResponse(String endpoint, String id, List<?> data, ResponseStatus status) {
+}
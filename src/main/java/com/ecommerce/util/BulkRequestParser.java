@@ -0,0 +1,178 @@
+package com.ecommerce.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@Component
+public class BulkRequestParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Parses a bulk request body of the form {"product": ["1", "2"], "customer": ["a1"]} as it is received,
+     * with a non-blocking Jackson parser fed by the body buffers: the IDs are emitted in chunks of at most chunkSize IDs
+     * of the same endpoint, without ever holding the whole body (nor the whole ID set) in memory.
+     *
+     * IDs may be JSON strings or integers. A malformed body, an unknown endpoint or more than maxIds IDs
+     * fail the returned Flux with a ServerWebInputException (400 Bad Request).
+     *
+     * @param body The request body.
+     * @param endpoints The endpoints which may be requested.
+     * @param chunkSize The max number of IDs per emitted chunk.
+     * @param maxIds The max number of IDs of the whole body.
+     * @return The chunks of IDs, in the order of the body.
+     */
+    public Flux<EndpointIds> parse(Flux<DataBuffer> body, Set<String> endpoints, int chunkSize, int maxIds) {
+        return Flux.defer(() -> {
+            BodyState state = new BodyState(endpoints, chunkSize, maxIds);
+            return body
+                    .concatMapIterable(buffer -> {
+                        try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+                            while (byteBuffers.hasNext()) {
+                                state.feed(byteBuffers.next());
+                            }
+                            return state.drainChunks();
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(state.end())));
+        });
+    }
+
+    /**
+     * The parsing state of one body: where the parser stands in the document and the chunks ready to be emitted.
+     */
+    private class BodyState {
+
+        private final Set<String> endpoints;
+        private final int chunkSize;
+        private final int maxIds;
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+
+        private final List<EndpointIds> readyChunks = new ArrayList<>();
+        private boolean started;
+        private boolean finished;
+        private String pendingEndpoint; // The endpoint name just read, its ID array not started yet
+        private String endpoint; // The endpoint whose ID array is being read, null between two arrays
+        private List<String> chunk;
+        private int idCount;
+
+        private BodyState(Set<String> endpoints, int chunkSize, int maxIds) {
+            this.endpoints = endpoints;
+            this.chunkSize = chunkSize;
+            this.maxIds = maxIds;
+            try {
+                this.parser = jsonFactory.createNonBlockingByteBufferParser();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to create the bulk request parser", e);
+            }
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        private void feed(ByteBuffer byteBuffer) {
+            try {
+                feeder.feedInput(byteBuffer);
+                readTokens();
+            } catch (IOException e) {
+                throw malformed(e);
+            }
+        }
+
+        private List<EndpointIds> end() {
+            feeder.endOfInput();
+            try {
+                readTokens();
+            } catch (IOException e) {
+                throw malformed(e);
+            }
+            if (!finished) {
+                throw new ServerWebInputException("Malformed bulk request body: unexpected end of body");
+            }
+            return drainChunks();
+        }
+
+        private List<EndpointIds> drainChunks() {
+            if (readyChunks.isEmpty()) {
+                return List.of();
+            }
+            List<EndpointIds> chunks = new ArrayList<>(readyChunks);
+            readyChunks.clear();
+            return chunks;
+        }
+
+        private void readTokens() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (finished) {
+                    throw new ServerWebInputException("Malformed bulk request body: content after the end of the object");
+                } else if (!started) {
+                    expect(token == JsonToken.START_OBJECT, "expected an object of endpoint to ID arrays");
+                    started = true;
+                } else if (endpoint != null) {
+                    readId(token);
+                } else if (pendingEndpoint != null) {
+                    expect(token == JsonToken.START_ARRAY, "expected an array of IDs for " + pendingEndpoint);
+                    endpoint = pendingEndpoint;
+                    pendingEndpoint = null;
+                    chunk = new ArrayList<>(chunkSize);
+                } else if (token == JsonToken.END_OBJECT) {
+                    finished = true;
+                } else {
+                    expect(token == JsonToken.FIELD_NAME, "expected an endpoint name");
+                    pendingEndpoint = parser.currentName();
+                    if (!endpoints.contains(pendingEndpoint)) {
+                        throw new ServerWebInputException("Unknown endpoint in bulk request body: " + pendingEndpoint);
+                    }
+                }
+            }
+        }
+
+        private void readId(JsonToken token) throws IOException {
+            if (token == JsonToken.END_ARRAY) {
+                if (!chunk.isEmpty()) {
+                    readyChunks.add(new EndpointIds(endpoint, chunk));
+                }
+                endpoint = null;
+                chunk = null;
+                return;
+            }
+            expect(token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT, "expected a string or integer ID");
+            if (++idCount > maxIds) {
+                throw new ServerWebInputException("Too many IDs in bulk request body, at most " + maxIds + " are allowed");
+            }
+            chunk.add(parser.getText());
+            if (chunk.size() == chunkSize) {
+                readyChunks.add(new EndpointIds(endpoint, chunk));
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+
+        private ServerWebInputException malformed(IOException e) {
+            String message = e instanceof JsonProcessingException jsonException ? jsonException.getOriginalMessage() : e.getMessage();
+            return new ServerWebInputException("Malformed bulk request body: " + message);
+        }
+
+        private void expect(boolean condition, String message) {
+            if (!condition) {
+                throw new ServerWebInputException("Malformed bulk request body: " + message);
+            }
+        }
+    }
+}
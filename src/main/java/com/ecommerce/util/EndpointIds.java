@@ -0,0 +1,12 @@
+package com.ecommerce.util;
+
+import java.util.List;
+
+/**
+ * A chunk of the IDs requested for one endpoint, as read from a bulk request body.
+ *
+ * @param endpoint The internal endpoint.
+ * @param ids The IDs of the chunk, as written in the body (not validated yet).
+ */
+public record EndpointIds(String endpoint, List<String> ids) {
+}
@@ -1,30 +1,89 @@
 package com.ecommerce.util;
 
+import com.ecommerce.config.IdType;
 import org.springframework.stereotype.Component;
-import org.springframework.web.util.HtmlUtils;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 
 @Component
 public class GatewayParser {
 
+    // Immutable and thread-safe, built once rather than for every log line
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+
+    /**
+     * Validates the IDs of an endpoint according to its ID type.
+     *
+     * @param idType The ID type of the endpoint.
+     * @param ids The IDs as received in the request.
+     * @return The validated IDs, in their canonical form.
+     */
+    public List<String> parseIds(IdType idType, List<String> ids) {
+        return switch (idType) {
+            case NUMERIC -> parseToBigDecimals(ids);
+            case ALPHANUMERIC -> parseAlphanumericCustomerIds(ids);
+        };
+    }
+
     public List<String> parseToBigDecimals(List<String> ids) {
-        return ids.stream()
-                .map(this::validateBigDecimal)
-                .toList();
+        List<String> parsedIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            parsedIds.add(validateBigDecimal(id));
+        }
+        return parsedIds;
     }
 
     public List<String> parseAlphanumericCustomerIds(List<String> ids) {
-        return ids.stream()
-                .map(this::validateCustomerId)
-                .toList();
+        List<String> parsedIds = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            parsedIds.add(validateCustomerId(id));
+        }
+        return parsedIds;
     }
 
+    /**
+     * Validates a positive integer ID and returns its canonical form (no sign, no leading zeros).
+     *
+     * The common case, an optional '+' followed by ASCII digits, is validated in a single pass without any
+     * intermediate number: the input itself is returned when it is already canonical, a substring of it otherwise.
+     * Any other form (decimals, exponents, negative numbers, non-ASCII digits, invalid input) goes through BigDecimal,
+     * which keeps the accepted values and the exceptions thrown exactly as they were, e.g. "12.7" giving "12" and
+     * "1e3" giving "1000".
+     *
+     * @param id The ID as received in the request.
+     * @return The canonical form of the ID.
+     */
     private String validateBigDecimal(String id) {
+        int length = id == null ? 0 : id.length();
+        int start = length > 0 && id.charAt(0) == '+' ? 1 : 0;
+        if (start == length) {
+            return validateBigDecimalSlowPath(id);
+        }
+
+        int firstSignificant = -1;
+        for (int i = start; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return validateBigDecimalSlowPath(id);
+            }
+            if (firstSignificant < 0 && c != '0') {
+                firstSignificant = i;
+            }
+        }
+
+        if (firstSignificant < 0) {
+            throw new IllegalArgumentException("For security reasons, only positive integers are allowed.");
+        }
+        return firstSignificant == 0 ? id : id.substring(firstSignificant);
+    }
+
+    private String validateBigDecimalSlowPath(String id) {
         try {
             BigDecimal decimal = new BigDecimal(id);
             decimal = new BigDecimal(decimal.toBigInteger());
@@ -37,17 +96,29 @@ public class GatewayParser {
         }
     }
 
+    /**
+     * Validates an alphanumeric customer ID in a single pass.
+     *
+     * Only non-empty IDs made of ASCII letters and digits are accepted: none of these characters is ever HTML-escaped,
+     * so the ID is returned as is, like the escaped value was before.
+     *
+     * @param id The ID as received in the request.
+     * @return The validated ID.
+     */
     private String validateCustomerId(String id) {
-        String sanitizedId = HtmlUtils.htmlEscape(id);
-        if (!sanitizedId.matches("[a-zA-Z0-9]+")) {
+        if (id == null || id.isEmpty()) {
             throw new IllegalArgumentException("Invalid customer ID: " + id);
         }
-        return sanitizedId;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))) {
+                throw new IllegalArgumentException("Invalid customer ID: " + id);
+            }
+        }
+        return id;
     }
 
     public String getFormattedCurrentTime() {
-        return DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
-                .withZone(ZoneId.systemDefault())
-                .format(Instant.now());
+        return TIME_FORMATTER.format(Instant.now());
     }
 }
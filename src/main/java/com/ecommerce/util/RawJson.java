@@ -0,0 +1,203 @@
+package com.ecommerce.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The data of one ID kept as the raw JSON bytes sent by the internal service (UPSTREAM_API_RAW_PAYLOADS),
+ * so that it is never decoded nor encoded again while it travels through the cache, the waiters and the gateway response.
+ *
+ * It is a List for the rest of the pipeline, the same as the decoded data: an upstream array is the list itself, and any
+ * other value is a single element list (e.g. "IN STOCK" is ["IN STOCK"]). Jackson writes the bytes as they are into the
+ * gateway response (wrapped in [ ] for a single value), the elements only being decoded if the list is read.
+ *
+ * The bytes always come from a well-formed JSON value, checked by the RawJsonParser, so splicing them is safe.
+ */
+@JsonSerialize(using = RawJson.Serializer.class)
+public final class RawJson extends AbstractList<Object> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** The data of an ID unknown to the internal service, written as []. */
+    public static final RawJson EMPTY = new RawJson("[]".getBytes(StandardCharsets.UTF_8), false, 0);
+
+    private final byte[] json;
+    private final boolean singleValue;
+    private final int size;
+
+    private List<?> decoded; // Decoded on the first read of an element, racy but idempotent
+
+    /**
+     * @param json The UTF-8 JSON value.
+     * @param singleValue true when the value is not an array, making a single element list.
+     * @param size The number of elements of the list.
+     */
+    RawJson(byte[] json, boolean singleValue, int size) {
+        this.json = json;
+        this.singleValue = singleValue;
+        this.size = size;
+    }
+
+    @Override
+    public Object get(int index) {
+        return decode().get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of bytes of the raw JSON value.
+     */
+    public int byteSize() {
+        return json.length;
+    }
+
+    private List<?> decode() {
+        List<?> list = decoded;
+        if (list == null) {
+            try {
+                Object value = OBJECT_MAPPER.readValue(json, Object.class);
+                list = singleValue ? Collections.singletonList(value) : (List<?>) value;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            decoded = list;
+        }
+        return list;
+    }
+
+    /**
+     * Writes the raw bytes straight into the output buffer of the generator.
+     */
+    static class Serializer extends JsonSerializer<RawJson> {
+
+        @Override
+        public void serialize(RawJson value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            if (value.singleValue) {
+                generator.writeStartArray();
+                generator.writeRawValue(new RawBytes(value.json));
+                generator.writeEndArray();
+            } else {
+                generator.writeRawValue(new RawBytes(value.json));
+            }
+        }
+    }
+
+    /**
+     * The raw bytes as a Jackson SerializableString: the UTF-8 generators (the ones writing the WebFlux responses) copy
+     * them with appendUnquotedUTF8, the character-based methods only being there to honor the contract.
+     */
+    private record RawBytes(byte[] utf8) implements SerializableString {
+
+        @Override
+        public String getValue() {
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return JsonStringEncoder.getInstance().quoteAsString(getValue());
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return utf8;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return append(asQuotedUTF8(), buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            char[] quoted = asQuotedChars();
+            if (offset + quoted.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            return append(utf8, buffer, offset);
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            String value = getValue();
+            if (offset + value.length() > buffer.length) {
+                return -1;
+            }
+            value.getChars(0, value.length(), buffer, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            byte[] quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return put(asQuotedUTF8(), buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            return put(utf8, buffer);
+        }
+
+        private static int append(byte[] bytes, byte[] buffer, int offset) {
+            if (offset + bytes.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+            return bytes.length;
+        }
+
+        private static int put(byte[] bytes, ByteBuffer buffer) {
+            if (bytes.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(bytes);
+            return bytes.length;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ecommerce.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+public class RawJsonParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Splits a batched upstream body of the form {"id1": [...], "id2": "..."} into the raw JSON value of each ID,
+     * with a single streaming pass of the Jackson tokenizer: the values are only scanned, never built into objects.
+     *
+     * Each value is copied out of the body, so a cached ID does not hold on to the body of its whole batch.
+     *
+     * @param body The UTF-8 body of the batched upstream call.
+     * @return The raw data of each ID, RawJson.EMPTY for a null value.
+     * @throws DecodingException if the body is not a JSON object.
+     */
+    public Map<String, RawJson> splitObject(byte[] body) {
+        Map<String, RawJson> values = new HashMap<>();
+        if (body == null || body.length == 0) {
+            return values;
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DecodingException("JSON decoding error: expected an object of ID to data");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String id = parser.currentName();
+                parser.nextToken();
+                values.put(id, readValue(parser, body));
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT) {
+                throw new DecodingException("JSON decoding error: expected an ID");
+            }
+            expectEnd(parser);
+        } catch (IOException e) {
+            throw new DecodingException("JSON decoding error: " + e.getMessage(), e);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the raw JSON value of a per-ID upstream body.
+     *
+     * @param body The UTF-8 body of the per-ID upstream call, possibly empty.
+     * @return The raw data of the ID, RawJson.EMPTY for an empty body or null.
+     * @throws DecodingException if the body is not a single JSON value.
+     */
+    public RawJson parseValue(byte[] body) {
+        if (body == null || body.length == 0) {
+            return RawJson.EMPTY;
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() == null) {
+                return RawJson.EMPTY;
+            }
+            RawJson value = readValue(parser, body);
+            expectEnd(parser);
+            return value;
+        } catch (IOException e) {
+            throw new DecodingException("JSON decoding error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scans the value the parser stands on, counting the elements of an array, and copies its bytes.
+     */
+    private RawJson readValue(JsonParser parser, byte[] body) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return RawJson.EMPTY;
+        }
+
+        int start = (int) parser.currentTokenLocation().getByteOffset();
+        int size = 0;
+        if (token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+                size++;
+            }
+        } else {
+            parser.skipChildren();
+            parser.finishToken(); // Strings are lazily read, their end is only known once finished
+            size = 1;
+        }
+        int end = (int) parser.currentLocation().getByteOffset();
+
+        if (size == 0) {
+            return RawJson.EMPTY;
+        }
+        return new RawJson(Arrays.copyOfRange(body, start, end), token != JsonToken.START_ARRAY, size);
+    }
+
+    private void expectEnd(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new DecodingException("JSON decoding error: unexpected content after the value");
+        }
+    }
+}
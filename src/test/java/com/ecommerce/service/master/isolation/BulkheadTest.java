@@ -0,0 +1,45 @@
+package com.ecommerce.service.master.isolation;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadTest {
+
+    @Test
+    void waitingCallGetsTheReleasedPermit() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        assertTrue(bulkhead.tryAcquire());
+
+        StepVerifier.create(bulkhead.acquire())
+                .then(() -> assertEquals(1, bulkhead.getWaiting()))
+                .then(bulkhead::release)
+                .verifyComplete();
+
+        // The permit went to the waiting call as it is, which still holds it
+        assertEquals(1, bulkhead.getInFlight());
+        assertFalse(bulkhead.tryAcquire());
+        bulkhead.release();
+        assertEquals(0, bulkhead.getInFlight());
+    }
+
+    @Test
+    void timedOutCallLeavesTheQueue() {
+        Bulkhead bulkhead = new Bulkhead(1);
+        assertTrue(bulkhead.tryAcquire());
+
+        StepVerifier.create(bulkhead.acquire().timeout(Duration.ofMillis(50)))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(0, bulkhead.getWaiting());
+        bulkhead.release();
+        assertEquals(0, bulkhead.getInFlight());
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.service.master.queue;
+
+import com.ecommerce.config.EndpointPropertyResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RequestQueueEntityTest {
+
+    private static final String ENDPOINT = "product";
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20000;
+
+    /**
+     * Concurrent requests enqueuing onto the same lane must all get their IDs queued, none failing as non serialized,
+     * whatever their request class (each class having its own sink per lane).
+     */
+    @ParameterizedTest
+    @EnumSource(RequestClass.class)
+    void concurrentEnqueuesOntoOneLaneAllSucceed(RequestClass requestClass) throws Exception {
+        RequestQueueEntity requestQueue = createRequestQueue();
+        AtomicInteger received = new AtomicInteger();
+        requestQueue.getOrCreateLanes(ENDPOINT, requestClass).forEach(lane -> lane.asFlux().subscribe(id -> received.incrementAndGet()));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> failures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int offset = thread * IDS_PER_THREAD;
+                failures.add(executor.submit(() -> {
+                    start.await();
+                    int failed = 0;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        if (requestQueue.enqueue(ENDPOINT, String.valueOf(100000000 + offset + i), requestClass).isFailure()) {
+                            failed++;
+                        }
+                    }
+                    return failed;
+                }));
+            }
+            start.countDown();
+
+            int failed = 0;
+            for (Future<Integer> future : failures) {
+                failed += future.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(0, failed);
+            assertEquals(THREADS * IDS_PER_THREAD, received.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A single lane, deep enough for every ID of the test, so only the contention between the emits is exercised.
+     */
+    private static RequestQueueEntity createRequestQueue() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("QUEUE_API_LANES", "1")
+                .withProperty("QUEUE_API_MAX_DEPTH", String.valueOf(THREADS * IDS_PER_THREAD));
+        EndpointPropertyResolver endpointProperties = new EndpointPropertyResolver();
+        ReflectionTestUtils.setField(endpointProperties, "environment", environment);
+
+        RequestQueueEntity requestQueue = new RequestQueueEntity();
+        ReflectionTestUtils.setField(requestQueue, "endpointProperties", endpointProperties);
+        ReflectionTestUtils.setField(requestQueue, "meterRegistry", new SimpleMeterRegistry());
+        return requestQueue;
+    }
+}
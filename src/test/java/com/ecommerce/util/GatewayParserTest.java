@@ -0,0 +1,100 @@
+package com.ecommerce.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.HtmlUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the single-pass validators against the former BigDecimal and HtmlUtils implementations, on random inputs:
+ * both must accept the same IDs with the same canonical form, and reject the others with the same exception.
+ */
+class GatewayParserTest {
+
+    private static final int SAMPLES = 100_000;
+
+    private static final String DIGITS = "0123456789";
+    private static final String NUMERIC_ALPHABET = DIGITS + DIGITS + "+-.eE ";
+    private static final String ALPHANUMERIC_ALPHABET = DIGITS + "abcdefxyzABCDEFXYZ";
+    private static final String EXOTIC_ALPHABET = "<>&\"' _-.,;é٠١１ ";
+
+    private final GatewayParser parser = new GatewayParser();
+
+    @Test
+    void numericIdsMatchTheBigDecimalImplementation() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Canonical or leading zeros, signed, decimal, exponent, or anything
+            String id = switch (random.nextInt(5)) {
+                case 0 -> randomString(random, DIGITS, 1 + random.nextInt(20));
+                case 1 -> (random.nextBoolean() ? "+" : "-") + randomString(random, DIGITS, random.nextInt(12));
+                case 2 -> randomString(random, DIGITS, 1 + random.nextInt(8)) + "." + randomString(random, DIGITS, random.nextInt(4));
+                case 3 -> randomString(random, DIGITS, 1 + random.nextInt(4)) + (random.nextBoolean() ? "e" : "E")
+                        + (random.nextBoolean() ? "-" : "") + random.nextInt(12);
+                default -> randomString(random, NUMERIC_ALPHABET + ALPHANUMERIC_ALPHABET + EXOTIC_ALPHABET, random.nextInt(10));
+            };
+            assertSameOutcome(id, GatewayParserTest::legacyValidateBigDecimal, candidate -> parser.parseToBigDecimals(List.of(candidate)).get(0));
+        }
+    }
+
+    @Test
+    void alphanumericIdsMatchTheHtmlUtilsImplementation() {
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            String alphabet = random.nextBoolean() ? ALPHANUMERIC_ALPHABET : ALPHANUMERIC_ALPHABET + EXOTIC_ALPHABET;
+            String id = randomString(random, alphabet, random.nextInt(12));
+            assertSameOutcome(id, GatewayParserTest::legacyValidateCustomerId, candidate -> parser.parseAlphanumericCustomerIds(List.of(candidate)).get(0));
+        }
+    }
+
+    private static void assertSameOutcome(String id, UnaryOperator<String> expected, UnaryOperator<String> actual) {
+        assertEquals(outcome(id, expected), outcome(id, actual), () -> "ID [" + id + "]");
+    }
+
+    /**
+     * The validated ID, or the class and message of the exception thrown.
+     */
+    private static String outcome(String id, UnaryOperator<String> validator) {
+        try {
+            return "accepted " + validator.apply(id);
+        } catch (RuntimeException e) {
+            return "rejected " + e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    // The implementations before the single-pass validators
+
+    private static String legacyValidateBigDecimal(String id) {
+        try {
+            BigDecimal decimal = new BigDecimal(id);
+            decimal = new BigDecimal(decimal.toBigInteger());
+            if (decimal.compareTo(BigDecimal.ZERO) > 0 && decimal.scale() == 0) {
+                return decimal.toString();
+            }
+            throw new IllegalArgumentException("For security reasons, only positive integers are allowed.");
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid number format for ID: " + id, e);
+        }
+    }
+
+    private static String legacyValidateCustomerId(String id) {
+        String sanitizedId = HtmlUtils.htmlEscape(id);
+        if (!sanitizedId.matches("[a-zA-Z0-9]+")) {
+            throw new IllegalArgumentException("Invalid customer ID: " + id);
+        }
+        return sanitizedId;
+    }
+}